@@ -16,8 +16,11 @@ public class ChessClient implements WebSocketComms.ServerMessageObserver {
     private WebSocketComms ws;
     private ChessGame currentGame;
     private int currentGameId;
+    //moves applied to currentGame, to spot a missed MOVE_APPLIED
+    private int currentSeq;
     private ChessGame.TeamColor currentPerspective;
     private boolean inGame = false;
+    private boolean watchingEval = false;
     public ChessClient(ServerFacade facade) {
         this.facade = facade;
     }
@@ -101,6 +104,7 @@ public class ChessClient implements WebSocketComms.ServerMessageObserver {
             case "create" -> handleCreateGame();
             case "list" -> handleListGames();
             case "play" -> handlePlayGame();
+            case "bot" -> handlePlayBot();
             case "observe" -> handleObserveGame();
             case "quit", "exit", "q" -> {
                 System.out.println("adios!");
@@ -117,6 +121,7 @@ public class ChessClient implements WebSocketComms.ServerMessageObserver {
                 create   - create a new game
                 list     - list games on server
                 play     - join game
+                bot      - play a game against the computer
                 observe  - observe a game
                 quit (q) - exit chess
                 """);
@@ -207,6 +212,43 @@ public class ChessClient implements WebSocketComms.ServerMessageObserver {
             System.out.println(cleanErrorMessage(e.getMessage()));
         }
     }
+    private void handlePlayBot() {
+        if (cachedGames.isEmpty()) {
+            System.out.println("run 'list' first.");
+            return;
+        }
+        try {
+            System.out.println("Game number (from 'list'): ");
+            int num = Integer.parseInt(scanner.nextLine().trim());
+            if (num < 1 || num > cachedGames.size()) {
+                System.out.println("Invalid game number");
+                return;
+            }
+            GameData game = cachedGames.get(num - 1);
+            System.out.println("Your color (WHITE/BLACK): ");
+            String colorStr = scanner.nextLine().trim().toUpperCase();
+            if (!colorStr.equals("WHITE") && !colorStr.equals("BLACK")) {
+                System.out.println("Color must be WHITE or BLACK.");
+                return;
+            }
+            var color = ChessGame.TeamColor.valueOf(colorStr);
+            var botColor = (color == ChessGame.TeamColor.WHITE) ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+            System.out.println("Computer seconds per move (default 1): ");
+            String secs = scanner.nextLine().trim();
+            long millis = secs.isBlank() ? 1000 : (long) (Double.parseDouble(secs) * 1000);
+
+            facade.joinGame(authToken, color, game.gameID());
+            facade.addBot(authToken, botColor, game.gameID(), millis);
+            System.out.printf("Joined '%s' as %s against the computer. %n", game.gameName(), color);
+            startGameplay(game.gameID(), color, false);
+        } catch (NumberFormatException nfe) {
+            System.out.println("Game number and seconds must be numbers");
+        } catch (IOException | InterruptedException e ){
+            System.out.println("Error joining da game: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.out.println(cleanErrorMessage(e.getMessage()));
+        }
+    }
     private void handleObserveGame() {
         if (cachedGames.isEmpty()) {
             System.out.println("Run 'list' first");
@@ -232,10 +274,12 @@ public class ChessClient implements WebSocketComms.ServerMessageObserver {
         this.currentGameId = gameId;
         this.currentPerspective = perspective;
         this.currentGame = null;
+        this.watchingEval = false;
         this.inGame = true;
-        this.ws = new WebSocketComms(facade.getWsUrl(), this);
+        this.ws = new WebSocketComms(facade.getWsUrl(), this, true);
         UserGameCommand connect = new UserGameCommand(
                 UserGameCommand.CommandType.CONNECT, authToken, gameId);
+        connect.setMoveDeltas(true);
         ws.send(connect);
         gameLoop(observing);
     }
@@ -261,6 +305,13 @@ public class ChessClient implements WebSocketComms.ServerMessageObserver {
                         handleResign();
                     }
                 }
+                case "eval" -> {
+                    if (observing) {
+                        toggleEval();
+                    } else {
+                        System.out.println("only observers can watch the engine evaluation.");
+                    }
+                }
                 case "leave" -> handleLeave();
                 default -> System.out.println("Unknown command. Type 'help'.");
             }
@@ -278,6 +329,7 @@ public class ChessClient implements WebSocketComms.ServerMessageObserver {
                 highlight    - highlight legal moves for a piece
                 move         - make a move (players only)
                 resign       - resign the game (players only)
+                eval         - toggle the live engine evaluation (observers only)
                 leave        - leave the game and return to menu
                 """);
         if (observing) {
@@ -485,8 +537,12 @@ public class ChessClient implements WebSocketComms.ServerMessageObserver {
         switch (message.getServerMessageType()) {
             case LOAD_GAME ->  {
                 this.currentGame = message.getGame();
+                if (message.getSequence() != null) {
+                    this.currentSeq = message.getSequence();
+                }
                 redrawBoard();
             }
+            case MOVE_APPLIED -> applyDelta(message);
             case NOTIFICATION -> {
                 System.out.println();
                 System.out.println("NOTIFICATION : " + message.getMessage());
@@ -495,6 +551,35 @@ public class ChessClient implements WebSocketComms.ServerMessageObserver {
                 System.out.println();
                 System.out.println("Server error: " + message.getErrorMessage());
             }
+            case EVALUATION -> {
+                var eval = message.getEvaluation();
+                String score = (eval.mateIn() != 0)
+                        ? "mate in " + eval.mateIn()
+                        : String.format("%+.2f", eval.score() / 100.0);
+                System.out.printf("%nEVAL depth %d: %s  %s%n", eval.depth(), score, String.join(" ", eval.pv()));
+            }
+        }
+    }
+    //play the move on our copy; on a gap or a move we can't apply, ask for the full board
+    private void applyDelta(ServerMessage message) {
+        if (currentGame == null || message.getSequence() != currentSeq + 1) {
+            ws.send(new UserGameCommand(UserGameCommand.CommandType.RESYNC, authToken, currentGameId));
+            return;
         }
+        try {
+            currentGame.makeMove(message.getMove());
+        } catch (InvalidMoveException e) {
+            currentGame = null;
+            ws.send(new UserGameCommand(UserGameCommand.CommandType.RESYNC, authToken, currentGameId));
+            return;
+        }
+        currentSeq = message.getSequence();
+        redrawBoard();
+    }
+    private void toggleEval() {
+        watchingEval = !watchingEval;
+        var type = watchingEval ? UserGameCommand.CommandType.WATCH_EVAL : UserGameCommand.CommandType.UNWATCH_EVAL;
+        ws.send(new UserGameCommand(type, authToken, currentGameId));
+        System.out.println(watchingEval ? "watching the engine evaluation" : "stopped watching the evaluation");
     }
 }
\ No newline at end of file
@@ -126,6 +126,25 @@ public class ServerFacade {
         }
     }
 
+    public void addBot(String authToken, ChessGame.TeamColor botColor, int gameID, long moveMillis)
+            throws IOException, InterruptedException {
+        record BotRequest(ChessGame.TeamColor playerColor, int gameID, long moveMillis) {
+        }
+        var body = gson.toJson(new BotRequest(botColor, gameID, moveMillis));
+
+        var request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/game/bot"))
+                .header("Authorization", authToken)
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        var response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new RuntimeException(response.body());
+        }
+    }
+
     public String getWsUrl() {
         return baseUrl.replaceFirst("^http", "ws") + "/ws";
     }
@@ -2,12 +2,15 @@ package client;
 
 
 import com.google.gson.Gson;
+import websocket.BinaryCodec;
 import websocket.commands.UserGameCommand;
 import websocket.messages.ServerMessage;
 
+import java.io.ByteArrayOutputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
 import java.util.concurrent.CompletionStage;
 
 public class WebSocketComms implements WebSocket.Listener {
@@ -18,19 +21,34 @@ public class WebSocketComms implements WebSocket.Listener {
 
     private final Gson gson = new Gson();
     private final ServerMessageObserver observer;
+    private final boolean binary;
+    //a binary message may arrive in several parts
+    private final ByteArrayOutputStream partial = new ByteArrayOutputStream();
     private WebSocket webSocket;
 
     public WebSocketComms(String wsUrl, ServerMessageObserver observer) {
+        this(wsUrl, observer, false);
+    }
+
+    /**
+     * @param binary speak the compact binary protocol instead of JSON text
+     */
+    public WebSocketComms(String wsUrl, ServerMessageObserver observer, boolean binary) {
         this.observer = observer;
+        this.binary = binary;
+        String url = binary ? wsUrl + "?" + BinaryCodec.QUERY_PARAM + "=" + BinaryCodec.NAME : wsUrl;
         this.webSocket = HttpClient.newHttpClient()
                 .newWebSocketBuilder()
-                .buildAsync(URI.create(wsUrl), this)
+                .buildAsync(URI.create(url), this)
                 .join();
     }
 
     public void send(UserGameCommand command) {
-        String json = gson.toJson(command);
-        webSocket.sendText(json, true);
+        if (binary) {
+            webSocket.sendBinary(ByteBuffer.wrap(BinaryCodec.encode(command)), true);
+        } else {
+            webSocket.sendText(gson.toJson(command), true);
+        }
     }
 
     public void close() {
@@ -53,6 +71,20 @@ public class WebSocketComms implements WebSocket.Listener {
         return null;
     }
 
+    @Override
+    public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+        byte[] chunk = new byte[data.remaining()];
+        data.get(chunk);
+        partial.writeBytes(chunk);
+        if (last) {
+            ServerMessage msg = BinaryCodec.decodeMessage(ByteBuffer.wrap(partial.toByteArray()));
+            partial.reset();
+            observer.notify(msg);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
     @Override
     public void onError(WebSocket webSocket, Throwable error) {
         System.out.println("Websocket error: " + error.getMessage());
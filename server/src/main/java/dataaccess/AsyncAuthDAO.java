@@ -0,0 +1,15 @@
+package dataaccess;
+
+import model.AuthData;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link AuthDAO} with results delivered later. Failures complete the future
+ * exceptionally with a {@link DataAccessException}.
+ */
+public interface AsyncAuthDAO {
+    CompletableFuture<AuthData> issue(String username);
+    CompletableFuture<AuthData> find(String authToken);
+    CompletableFuture<Void> delete(String authToken);
+}
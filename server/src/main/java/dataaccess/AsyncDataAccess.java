@@ -0,0 +1,137 @@
+package dataaccess;
+
+import model.AuthData;
+import model.GameData;
+import model.UserData;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Non-blocking view of a {@link DataAccess}.
+ * <p>
+ * Each call runs the matching synchronous DAO call on an I/O executor and
+ * returns at once, so a caller can start independent lookups together and wait
+ * for them once. The SQL backend runs them on a few dedicated threads. The
+ * in-memory backend runs them on the calling thread, because nothing there
+ * blocks. Calls made this way never join the caller's transaction.
+ */
+public class AsyncDataAccess {
+
+    //one synchronous DAO call
+    private interface Call<T> {
+        T run() throws DataAccessException;
+    }
+
+    private final Executor io;
+    private final AsyncUserDAO users;
+    private final AsyncAuthDAO auths;
+    private final AsyncGameDAO games;
+
+    public AsyncDataAccess(DataAccess db, Executor io) {
+        this.io = io;
+        this.users = new AsyncUserDAO() {
+            @Override
+            public CompletableFuture<Void> insert(UserData user) {
+                return submit(() -> {
+                    db.users().insert(user);
+                    return null;
+                });
+            }
+
+            @Override
+            public CompletableFuture<UserData> find(String username) {
+                return submit(() -> db.users().find(username));
+            }
+        };
+        this.auths = new AsyncAuthDAO() {
+            @Override
+            public CompletableFuture<AuthData> issue(String username) {
+                return submit(() -> db.auths().issue(username));
+            }
+
+            @Override
+            public CompletableFuture<AuthData> find(String authToken) {
+                return submit(() -> db.auths().find(authToken));
+            }
+
+            @Override
+            public CompletableFuture<Void> delete(String authToken) {
+                return submit(() -> {
+                    db.auths().delete(authToken);
+                    return null;
+                });
+            }
+        };
+        this.games = new AsyncGameDAO() {
+            @Override
+            public CompletableFuture<GameData> create(String gameName) {
+                return submit(() -> db.games().create(gameName));
+            }
+
+            @Override
+            public CompletableFuture<GameData> find(int gameID) {
+                return submit(() -> db.games().find(gameID));
+            }
+
+            @Override
+            public CompletableFuture<Collection<GameData>> list() {
+                return submit(() -> db.games().list());
+            }
+
+            @Override
+            public CompletableFuture<Boolean> update(int expectedVersion, GameData game) {
+                return submit(() -> db.games().update(expectedVersion, game));
+            }
+        };
+    }
+
+    public AsyncUserDAO users() {
+        return users;
+    }
+
+    public AsyncAuthDAO auths() {
+        return auths;
+    }
+
+    public AsyncGameDAO games() {
+        return games;
+    }
+
+    /**
+     * Waits for a result, unwrapping the failure back into the exception the
+     * synchronous call would have thrown.
+     */
+    public static <T> T await(CompletableFuture<T> pending) throws DataAccessException {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof DataAccessException dae) {
+                throw dae;
+            }
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new DataAccessException("async call failed", e.getCause());
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Call<T> call) {
+        var result = new CompletableFuture<T>();
+        try {
+            io.execute(() -> {
+                try {
+                    result.complete(call.run());
+                } catch (DataAccessException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new DataAccessException("database is shutting down", e));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,18 @@
+package dataaccess;
+
+import model.GameData;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link GameDAO} with results delivered later. Failures complete the future
+ * exceptionally with a {@link DataAccessException}.
+ */
+public interface AsyncGameDAO {
+    CompletableFuture<GameData> create(String gameName);
+    CompletableFuture<GameData> find(int gameID);
+    CompletableFuture<Collection<GameData>> list();
+    //same compare-and-set as GameDAO.update(int, GameData)
+    CompletableFuture<Boolean> update(int expectedVersion, GameData game);
+}
@@ -0,0 +1,14 @@
+package dataaccess;
+
+import model.UserData;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link UserDAO} with results delivered later. Failures complete the future
+ * exceptionally with a {@link DataAccessException}.
+ */
+public interface AsyncUserDAO {
+    CompletableFuture<Void> insert(UserData user);
+    CompletableFuture<UserData> find(String username);
+}
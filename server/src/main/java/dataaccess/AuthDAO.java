@@ -2,9 +2,20 @@ package dataaccess;
 
 import model.AuthData;
 
+import java.util.UUID;
+
 public interface AuthDAO {
     void clear() throws DataAccessException;
     void insert(AuthData auth) throws DataAccessException;
     AuthData find(String authToken) throws DataAccessException;
     void delete(String authToken) throws DataAccessException;
+
+    /**
+     * Makes a new token for the user and stores it.
+     */
+    default AuthData issue(String username) throws DataAccessException {
+        var auth = new AuthData(UUID.randomUUID().toString(), username);
+        insert(auth);
+        return auth;
+    }
 }
@@ -1,13 +1,30 @@
 package dataaccess;
 
+import java.util.HashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import model.AuthData;
 
 
 public class AuthDataDAO implements AuthDAO {
     private final ConcurrentHashMap<String, AuthData> auths = new ConcurrentHashMap<>();
+    private final UndoLog undo;
 
-    @Override public void clear() {auths.clear(); }
+    public AuthDataDAO() {
+        this(new UndoLog());
+    }
+
+    AuthDataDAO(UndoLog undo) {
+        this.undo = undo;
+    }
+
+    @Override
+    public void clear() {
+        if (undo.active()) {
+            var before = new HashMap<>(auths);
+            undo.record(() -> auths.putAll(before));
+        }
+        auths.clear();
+    }
 
     @Override
     public void insert(AuthData auth) throws DataAccessException {
@@ -18,6 +35,7 @@ public class AuthDataDAO implements AuthDAO {
         if (prior != null) {
             throw new DataAccessException("duplicate auth token");
         }
+        undo.record(() -> auths.remove(auth.authToken(), auth));
     }
 
     @Override
@@ -28,7 +46,10 @@ public class AuthDataDAO implements AuthDAO {
     @Override
     public void delete(String authToken) {
         if (authToken != null) {
-            auths.remove(authToken);
+            var removed = auths.remove(authToken);
+            if (removed != null) {
+                undo.record(() -> auths.putIfAbsent(authToken, removed));
+            }
         }
     }
 }
@@ -0,0 +1,130 @@
+package dataaccess;
+
+import model.AuthData;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers recent token lookups in front of another {@link AuthDAO}.
+ * <p>
+ * Every request checks its token, so the same few tokens are looked up over and
+ * over. Found tokens are kept for {@code ttlMillis} in an LRU map of at most
+ * {@code maxSize} entries. Deleting a token, or clearing, drops it from the
+ * cache straight away; the TTL only bounds how long a token removed behind the
+ * cache's back (another server, a manual DELETE) keeps working here.
+ * Unknown tokens are not cached.
+ */
+public class CachingAuthDAO implements AuthDAO {
+
+    public record Stats(int size, long hits, long misses, long expired) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private record Cached(AuthData auth, long expiresAt) {}
+
+    private final AuthDAO delegate;
+    private final long ttlNanos;
+    private final Map<String, Cached> cache;
+    //bumped on every invalidation, guarded by cache
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    public CachingAuthDAO(AuthDAO delegate, int maxSize, long ttlMillis) {
+        this.delegate = delegate;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        invalidateAll();
+        delegate.clear();
+    }
+
+    @Override
+    public void insert(AuthData auth) throws DataAccessException {
+        //not cached here: the insert may still be rolled back with its transaction
+        delegate.insert(auth);
+    }
+
+    @Override
+    public AuthData issue(String username) throws DataAccessException {
+        return delegate.issue(username);
+    }
+
+    @Override
+    public AuthData find(String authToken) throws DataAccessException {
+        if (authToken == null) {
+            return delegate.find(null);
+        }
+        long now = System.nanoTime();
+        long seen;
+        synchronized (cache) {
+            seen = generation;
+            var hit = cache.get(authToken);
+            if (hit != null) {
+                if (now - hit.expiresAt() < 0) {
+                    hits.increment();
+                    return hit.auth();
+                }
+                cache.remove(authToken);
+                expired.increment();
+            }
+        }
+        misses.increment();
+        var auth = delegate.find(authToken);
+        if (auth != null) {
+            synchronized (cache) {
+                //skip it if anything was invalidated while we were reading; it may have been this token
+                if (generation == seen) {
+                    cache.put(authToken, new Cached(auth, now + ttlNanos));
+                }
+            }
+        }
+        return auth;
+    }
+
+    @Override
+    public void delete(String authToken) throws DataAccessException {
+        invalidate(authToken);
+        delegate.delete(authToken);
+        //and again, so a lookup that read the row before it went can't cache it
+        invalidate(authToken);
+    }
+
+    public void invalidate(String authToken) {
+        synchronized (cache) {
+            generation++;
+            cache.remove(authToken);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (cache) {
+            generation++;
+            cache.clear();
+        }
+    }
+
+    public Stats stats() {
+        int size;
+        synchronized (cache) {
+            size = cache.size();
+        }
+        return new Stats(size, hits.sum(), misses.sum(), expired.sum());
+    }
+}
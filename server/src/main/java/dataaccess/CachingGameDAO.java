@@ -0,0 +1,409 @@
+package dataaccess;
+
+import chess.ChessMove;
+import model.GameData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps active games in memory in front of another {@link GameDAO}.
+ * <p>
+ * Reads of a cached game never reach the database. Writes change the cached copy
+ * and mark it dirty; a background thread writes dirty games back at most
+ * {@code flushMillis} later, so a burst of moves on one game costs one UPDATE.
+ * The same thread evicts games idle for longer than {@code maxIdleMillis}, and the
+ * least recently used ones once more than {@code maxSize} are cached, flushing
+ * them first. {@link #close()} flushes everything that is left.
+ * <p>
+ * The cache assumes it is the only writer of the games table, so it is only
+ * suitable for a single server and {@link SqlDataAccessDAO} only uses it when
+ * {@link SqlDataAccessDAO#GAME_CACHE_PROPERTY} is set. Writes are not part of database transactions.
+ * Versions handed out by the cache are stamps from one counter rather than the
+ * table's version column, so a version read before an eviction can never match
+ * one issued after a reload. New moves wait with the dirty game and are written
+ * in the same flush, after the board they lead to.
+ */
+public class CachingGameDAO implements GameDAO {
+
+    public record Stats(int cached, int dirty, long hits, long misses, long flushes, long evictions) {}
+
+    private static final class Entry {
+        GameData game;
+        long lastAccess;
+        boolean dirty;
+        boolean evicted;
+        //moves not yet in the table, oldest first
+        List<ChessMove> newMoves = new ArrayList<>();
+        //held while a flush writes, so a reader of the move list never sees a move twice or not at all
+        final Object flushing = new Object();
+
+        Entry(GameData game) {
+            this.game = game;
+            this.lastAccess = System.nanoTime();
+        }
+    }
+
+    //wraps a checked exception thrown inside ConcurrentHashMap.compute
+    private static final class LoadFailed extends RuntimeException {
+        LoadFailed(DataAccessException cause) {
+            super(cause);
+        }
+    }
+
+    private final GameDAO delegate;
+    private final int maxSize;
+    private final long maxIdleNanos;
+    private final Map<Integer, Entry> cache = new ConcurrentHashMap<>();
+    private final Queue<Entry> dirty = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger stamps = new AtomicInteger();
+    private final ScheduledExecutorService flusher;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CachingGameDAO(GameDAO delegate, int maxSize, long maxIdleMillis, long flushMillis) {
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.maxIdleNanos = TimeUnit.MILLISECONDS.toNanos(maxIdleMillis);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            var t = new Thread(r, "game-cache-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::maintain, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        for (var entry : cache.values()) {
+            synchronized (entry) {
+                entry.evicted = true;
+            }
+        }
+        cache.clear();
+        dirty.clear();
+        delegate.clear();
+    }
+
+    @Override
+    public GameData create(String gameName) throws DataAccessException {
+        var game = delegate.create(gameName);
+        //a new game is about to be joined and played
+        var entry = new Entry(stamp(game));
+        cache.put(game.gameID(), entry);
+        return entry.game;
+    }
+
+    @Override
+    public GameData find(int gameID) throws DataAccessException {
+        while (true) {
+            var entry = entry(gameID);
+            if (entry == null) {
+                return null;
+            }
+            synchronized (entry) {
+                if (!entry.evicted) {
+                    entry.lastAccess = System.nanoTime();
+                    return entry.game;
+                }
+            }
+        }
+    }
+
+    @Override
+    public Collection<GameData> list() throws DataAccessException {
+        var games = new TreeMap<Integer, GameData>();
+        for (var game : delegate.list()) {
+            games.put(game.gameID(), game);
+        }
+        overlay(games);
+        return new ArrayList<>(games.values());
+    }
+
+    @Override
+    public List<GameData> listAfter(int afterID, int limit) throws DataAccessException {
+        var games = new TreeMap<Integer, GameData>();
+        for (var game : delegate.listAfter(afterID, limit)) {
+            games.put(game.gameID(), game);
+        }
+        //a cached copy may be newer than the row
+        overlay(games);
+        return games.values().stream()
+                .filter(g -> g.gameID() > afterID)
+                .sorted(Comparator.comparingInt(GameData::gameID))
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public void update(GameData game) throws DataAccessException {
+        if (game == null) {
+            throw new DataAccessException("null game");
+        }
+        write(game, null);
+    }
+
+    @Override
+    public boolean update(int expectedVersion, GameData game) throws DataAccessException {
+        if (game == null) {
+            throw new DataAccessException("null game");
+        }
+        return write(game, expectedVersion);
+    }
+
+    @Override
+    public void addMove(int gameID, ChessMove move) throws DataAccessException {
+        while (true) {
+            var entry = entry(gameID);
+            if (entry == null) {
+                throw new DataAccessException("game not found: " + gameID);
+            }
+            synchronized (entry) {
+                if (entry.evicted) {
+                    continue;
+                }
+                entry.newMoves.add(move);
+                entry.lastAccess = System.nanoTime();
+                markDirty(entry);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public List<ChessMove> moves(int gameID) throws DataAccessException {
+        var entry = cache.get(gameID);
+        if (entry == null) {
+            return delegate.moves(gameID);
+        }
+        synchronized (entry.flushing) {
+            var moves = new ArrayList<>(delegate.moves(gameID));
+            synchronized (entry) {
+                moves.addAll(entry.newMoves);
+            }
+            return moves;
+        }
+    }
+
+    public Stats stats() {
+        int dirtyCount = 0;
+        for (var entry : cache.values()) {
+            synchronized (entry) {
+                if (entry.dirty) {
+                    dirtyCount++;
+                }
+            }
+        }
+        return new Stats(cache.size(), dirtyCount, hits.sum(), misses.sum(), flushes.sum(), evictions.sum());
+    }
+
+    /**
+     * Stops the background thread and writes back every dirty game.
+     */
+    public void close() throws DataAccessException {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        DataAccessException failed = null;
+        for (var entry : cache.values()) {
+            try {
+                flush(entry);
+            } catch (DataAccessException e) {
+                failed = e;
+            }
+        }
+        if (failed != null) {
+            throw failed;
+        }
+    }
+
+    //helpers
+    private boolean write(GameData game, Integer expectedVersion) throws DataAccessException {
+        int id = game.gameID();
+        while (true) {
+            var entry = entry(id);
+            if (entry == null) {
+                throw new DataAccessException("game not found: " + id);
+            }
+            synchronized (entry) {
+                if (entry.evicted) {
+                    continue;
+                }
+                if (expectedVersion != null && entry.game.version() != expectedVersion) {
+                    return false;
+                }
+                entry.game = stamp(game);
+                entry.lastAccess = System.nanoTime();
+                markDirty(entry);
+                return true;
+            }
+        }
+    }
+
+    //caller holds the entry
+    private void markDirty(Entry entry) {
+        if (!entry.dirty) {
+            entry.dirty = true;
+            dirty.add(entry);
+        }
+    }
+
+    //cached entry, loading it on a miss; null if the game doesn't exist
+    private Entry entry(int gameID) throws DataAccessException {
+        var entry = cache.get(gameID);
+        if (entry != null) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        try {
+            //load inside compute so an eviction's flush can't slip between our read and our insert
+            return cache.compute(gameID, (id, existing) -> {
+                if (existing != null) {
+                    return existing;
+                }
+                try {
+                    var loaded = delegate.find(id);
+                    return (loaded == null) ? null : new Entry(stamp(loaded));
+                } catch (DataAccessException e) {
+                    throw new LoadFailed(e);
+                }
+            });
+        } catch (LoadFailed e) {
+            throw (DataAccessException) e.getCause();
+        }
+    }
+
+    private GameData stamp(GameData game) {
+        return new GameData(game.gameID(), game.whiteUsername(), game.blackUsername(),
+                game.gameName(), game.game(), stamps.incrementAndGet());
+    }
+
+    private void overlay(Map<Integer, GameData> games) {
+        for (var entry : cache.values()) {
+            synchronized (entry) {
+                if (!entry.evicted) {
+                    games.computeIfPresent(entry.game.gameID(), (id, g) -> entry.game);
+                }
+            }
+        }
+    }
+
+    //runs on the flusher thread only
+    private void maintain() {
+        //only what is queued now, so a failing flush that requeues itself can't spin
+        Entry entry;
+        for (int n = dirty.size(); n > 0 && (entry = dirty.poll()) != null; n--) {
+            try {
+                flush(entry);
+            } catch (DataAccessException e) {
+                //leave it dirty; the next pass or the eviction will try again
+                System.out.printf("Game cache flush failed: %s%n", e.getMessage());
+            }
+        }
+        try {
+            evict();
+        } catch (RuntimeException e) {
+            System.out.printf("Game cache eviction failed: %s%n", e.getMessage());
+        }
+    }
+
+    private void flush(Entry entry) throws DataAccessException {
+        synchronized (entry.flushing) {
+            GameData snapshot;
+            List<ChessMove> moves;
+            synchronized (entry) {
+                if (!entry.dirty || entry.evicted) {
+                    return;
+                }
+                snapshot = entry.game;
+                moves = entry.newMoves;
+                entry.newMoves = new ArrayList<>();
+                entry.dirty = false;
+            }
+            int written = 0;
+            try {
+                delegate.update(snapshot);
+                for (var move : moves) {
+                    delegate.addMove(snapshot.gameID(), move);
+                    written++;
+                }
+                flushes.increment();
+            } catch (DataAccessException e) {
+                synchronized (entry) {
+                    //put back what didn't make it, ahead of anything added since
+                    entry.newMoves.addAll(0, moves.subList(written, moves.size()));
+                    markDirty(entry);
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void evict() {
+        long now = System.nanoTime();
+        List<Map.Entry<Integer, Entry>> candidates = new ArrayList<>(cache.entrySet());
+        int excess = candidates.size() - maxSize;
+        if (excess > 0) {
+            candidates.sort(Comparator.comparingLong(e -> lastAccess(e.getValue())));
+        }
+        for (var candidate : candidates) {
+            boolean idle = now - lastAccess(candidate.getValue()) > maxIdleNanos;
+            if (!idle && excess <= 0) {
+                continue;
+            }
+            if (evict(candidate.getKey(), candidate.getValue())) {
+                excess--;
+            }
+        }
+    }
+
+    private boolean evict(int gameID, Entry entry) {
+        //holding the entry keeps writers out while the final copy goes to the database
+        synchronized (entry.flushing) {
+            synchronized (entry) {
+                if (entry.dirty) {
+                    try {
+                        delegate.update(entry.game);
+                        while (!entry.newMoves.isEmpty()) {
+                            delegate.addMove(gameID, entry.newMoves.get(0));
+                            entry.newMoves.remove(0);
+                        }
+                        flushes.increment();
+                    } catch (DataAccessException e) {
+                        return false;
+                    }
+                    entry.dirty = false;
+                }
+                entry.evicted = true;
+                cache.remove(gameID, entry);
+            }
+        }
+        evictions.increment();
+        return true;
+    }
+
+    private static long lastAccess(Entry entry) {
+        synchronized (entry) {
+            return entry.lastAccess;
+        }
+    }
+}
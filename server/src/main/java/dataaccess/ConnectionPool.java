@@ -0,0 +1,175 @@
+package dataaccess;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A small bounded JDBC connection pool.
+ * <p>
+ * Callers get a proxy whose {@code close()} hands the connection back instead
+ * of closing it, so the usual {@code try (var conn = ...)} blocks keep working.
+ * At most {@code maxSize} connections exist; callers beyond that wait up to
+ * {@code maxWaitMillis}. Connections that sat idle for a while are validated
+ * before they are handed out, and broken ones are replaced.
+ */
+public class ConnectionPool {
+
+    public interface Factory {
+        Connection open() throws SQLException;
+    }
+
+    public record Stats(int maxSize, int open, int idle, int inUse, int waiting,
+                        long borrows, long timeouts, long created, long discarded, double avgWaitMillis) {}
+
+    //idle connections younger than this are assumed to still be alive
+    private static final long VALIDATE_AFTER_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final int VALIDATE_TIMEOUT_SECONDS = 2;
+
+    private record Idle(Connection conn, long since) {}
+
+    private final Factory factory;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<Idle> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    public ConnectionPool(Factory factory, int maxSize, long maxWaitMillis) {
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * @throws DataAccessException if no connection frees up within the max wait,
+     *                             or a new one cannot be opened
+     */
+    public Connection borrow() throws DataAccessException {
+        long start = System.nanoTime();
+        waiting.incrementAndGet();
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new DataAccessException("timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("interrupted waiting for a database connection", e);
+        } finally {
+            waiting.decrementAndGet();
+            waitNanos.add(System.nanoTime() - start);
+        }
+        borrows.increment();
+        try {
+            return wrap(takeOrOpen());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw new DataAccessException("failed to get connection", e);
+        }
+    }
+
+    public Stats stats() {
+        int idleCount = idle.size();
+        int openCount = open.get();
+        long n = borrows.sum();
+        return new Stats(maxSize, openCount, idleCount, openCount - idleCount, waiting.get(),
+                n, timeouts.sum(), created.sum(), discarded.sum(),
+                n == 0 ? 0 : waitNanos.sum() / 1e6 / n);
+    }
+
+    /**
+     * Closes every idle connection. Connections in use are closed when returned.
+     */
+    public void close() {
+        Idle entry;
+        while ((entry = idle.pollFirst()) != null) {
+            discard(entry.conn());
+        }
+    }
+
+    //helpers
+    private Connection takeOrOpen() throws SQLException {
+        Idle entry;
+        while ((entry = idle.pollFirst()) != null) {
+            if (System.nanoTime() - entry.since() < VALIDATE_AFTER_NANOS
+                    || entry.conn().isValid(VALIDATE_TIMEOUT_SECONDS)) {
+                return entry.conn();
+            }
+            discard(entry.conn());
+        }
+        var conn = factory.open();
+        open.incrementAndGet();
+        created.increment();
+        return conn;
+    }
+
+    private void release(Connection conn) {
+        try {
+            if (conn.isClosed()) {
+                open.decrementAndGet();
+                discarded.increment();
+                return;
+            }
+            //don't leak a half-finished transaction to the next borrower
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            idle.addFirst(new Idle(conn, System.nanoTime()));
+        } catch (SQLException e) {
+            discard(conn);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(Connection conn) {
+        open.decrementAndGet();
+        discarded.increment();
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+            //already unusable
+        }
+    }
+
+    private Connection wrap(Connection conn) {
+        var returned = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.equals("close")) {
+                        if (returned.compareAndSet(false, true)) {
+                            release(conn);
+                        }
+                        return null;
+                    }
+                    if (name.equals("isClosed")) {
+                        return returned.get() || conn.isClosed();
+                    }
+                    if (returned.get()) {
+                        throw new SQLException("connection already returned to the pool");
+                    }
+                    try {
+                        return method.invoke(conn, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -5,4 +5,31 @@ public interface DataAccess {
     UserDAO users();
     AuthDAO auths();
     GameDAO games();
+    PuzzleDAO puzzles();
+
+    /**
+     * The same users, tokens and games behind calls that return futures.
+     */
+    AsyncDataAccess async();
+
+    /**
+     * A unit of work run by {@link #inTransaction}. It may throw one checked
+     * exception of its own besides DataAccessException.
+     */
+    interface Work<T, E extends Exception> {
+        T run(DataAccess tx) throws E, DataAccessException;
+    }
+
+    /**
+     * Runs several DAO calls as one unit: they share a connection and commit
+     * together, or not at all if the work throws. Calls made inside an outer
+     * transaction join it.
+     */
+    <T, E extends Exception> T inTransaction(Work<T, E> work) throws E, DataAccessException;
+
+    /**
+     * Writes back anything held in memory. Call once when shutting down.
+     */
+    default void close() throws DataAccessException {
+    }
 }
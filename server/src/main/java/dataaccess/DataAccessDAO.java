@@ -2,16 +2,27 @@ package dataaccess;
 
 import model.AuthData;
 
+import java.util.concurrent.locks.ReentrantLock;
+
 public class DataAccessDAO implements DataAccess {
-    private final UserDataDAO users = new UserDataDAO();
-    private final AuthDataDAO auths = new AuthDataDAO();
-    private final GameDataDAO games = new GameDataDAO();
+    //the DAOs record how to undo their writes while a transaction is open on the thread
+    private final UndoLog undo = new UndoLog();
+    private final UserDataDAO users = new UserDataDAO(undo);
+    private final AuthDataDAO auths = new AuthDataDAO(undo);
+    private final GameDataDAO games = new GameDataDAO(undo);
+    private final PuzzleDataDAO puzzles = new PuzzleDataDAO(undo);
+    //transactions run one at a time; writes outside a transaction are not held back
+    //and can be seen half done, which is weaker isolation than MySQL's
+    private final ReentrantLock transactionLock = new ReentrantLock();
+    //nothing here blocks, so async calls just run on the caller's thread
+    private final AsyncDataAccess async = new AsyncDataAccess(this, Runnable::run);
 
     @Override
     public void clearAll(){
         users.clear();
         auths.clear();
         games.clear();
+        puzzles.clear();
     }
 
     @Override
@@ -28,4 +39,40 @@ public class DataAccessDAO implements DataAccess {
     public GameDAO games() {
         return games;
     }
+
+    @Override
+    public PuzzleDAO puzzles() {
+        return puzzles;
+    }
+
+    @Override
+    public AsyncDataAccess async() {
+        return async;
+    }
+
+    @Override
+    public <T, E extends Exception> T inTransaction(Work<T, E> work) throws E, DataAccessException {
+        transactionLock.lock();
+        try {
+            if (undo.active()) {
+                //nested: joins the outer transaction
+                return work.run(this);
+            }
+            undo.begin();
+            boolean done = false;
+            try {
+                T result = work.run(this);
+                done = true;
+                return result;
+            } finally {
+                if (done) {
+                    undo.commit();
+                } else {
+                    undo.rollback();
+                }
+            }
+        } finally {
+            transactionLock.unlock();
+        }
+    }
 }
@@ -1,5 +1,7 @@
 package dataaccess;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.*;
 import java.util.Properties;
 
@@ -8,6 +10,29 @@ public class DatabaseManager {
     private static String dbUsername;
     private static String dbPassword;
     private static String connectionUrl;
+    private static ConnectionPool pool;
+    private static final ThreadLocal<Transaction> TRANSACTION = new ThreadLocal<>();
+
+    //one open transaction; hands DAOs a view of its connection that ignores close()
+    private record Transaction(Connection conn, Connection shared) {
+        Transaction(Connection conn) {
+            this(conn, (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        if (method.getName().equals("close")) {
+                            return null;
+                        }
+                        try {
+                            return method.invoke(conn, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }));
+        }
+    }
+
+    //pooled connections live long enough for the driver's statement cache to pay off
+    private static final String POOLED_OPTIONS =
+            "?cachePrepStmts=true&prepStmtCacheSize=250&prepStmtCacheSqlLimit=2048&useServerPrepStmts=true";
 
     /*
      * Load the database information for the db.properties file.
@@ -42,16 +67,70 @@ public class DatabaseManager {
      * </code>
      */
     static Connection getConnection() throws DataAccessException {
-        try {
-            //do not wrap the following line with a try-with-resources
-            var conn = DriverManager.getConnection(connectionUrl, dbUsername, dbPassword);
-            conn.setCatalog(databaseName);
-            return conn;
+        var tx = TRANSACTION.get();
+        if (tx != null) {
+            //the transaction owns the connection; DAOs closing it must not end it
+            return tx.shared();
+        }
+        //closing the connection returns it to the pool
+        return pool.borrow();
+    }
+
+    /**
+     * Runs the work with every DAO call on this thread sharing one connection,
+     * committing at the end or rolling back if it throws. Nested calls join the
+     * outer transaction.
+     */
+    static <T, E extends Exception> T inTransaction(DataAccess.Work<T, E> work, DataAccess tx)
+            throws E, DataAccessException {
+        if (TRANSACTION.get() != null) {
+            return work.run(tx);
+        }
+        try (var conn = pool.borrow()) {
+            var transaction = new Transaction(conn);
+            TRANSACTION.set(transaction);
+            Throwable failure = null;
+            try {
+                conn.setAutoCommit(false);
+                T result = work.run(tx);
+                conn.commit();
+                return result;
+            } catch (Throwable t) {
+                failure = t;
+                throw t;
+            } finally {
+                TRANSACTION.remove();
+                try {
+                    if (failure != null) {
+                        conn.rollback();
+                    }
+                    conn.setAutoCommit(true);
+                } catch (SQLException cleanup) {
+                    //the work's own failure is the one worth reporting
+                    if (failure == null) {
+                        throw cleanup;
+                    }
+                    failure.addSuppressed(cleanup);
+                }
+            }
         } catch (SQLException ex) {
-            throw new DataAccessException("failed to get connection", ex);
+            throw new DataAccessException("transaction failed", ex);
         }
     }
 
+    /**
+     * @return how the connection pool is doing, for monitoring
+     */
+    public static ConnectionPool.Stats poolStats() {
+        return pool.stats();
+    }
+
+    private static Connection openConnection() throws SQLException {
+        var conn = DriverManager.getConnection(connectionUrl + POOLED_OPTIONS, dbUsername, dbPassword);
+        conn.setCatalog(databaseName);
+        return conn;
+    }
+
     private static void loadPropertiesFromResources() {
         try (var propStream = Thread.currentThread().getContextClassLoader().getResourceAsStream("db.properties")) {
             if (propStream == null) {
@@ -73,5 +152,9 @@ public class DatabaseManager {
         var host = props.getProperty("db.host");
         var port = Integer.parseInt(props.getProperty("db.port"));
         connectionUrl = String.format("jdbc:mysql://%s:%d", host, port);
+
+        int poolSize = Integer.parseInt(props.getProperty("db.pool.size", "10"));
+        long maxWait = Long.parseLong(props.getProperty("db.pool.maxWaitMillis", "5000"));
+        pool = new ConnectionPool(DatabaseManager::openConnection, poolSize, maxWait);
     }
 }
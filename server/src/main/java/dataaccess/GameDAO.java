@@ -1,6 +1,9 @@
 package dataaccess;
 
+import chess.ChessMove;
+
 import java.util.Collection;
+import java.util.List;
 import model.GameData;
 
 public interface GameDAO {
@@ -8,5 +11,14 @@ public interface GameDAO {
     GameData create(String gameName) throws DataAccessException;
     GameData find(int gameID) throws DataAccessException;
     Collection<GameData> list() throws DataAccessException;
+    //keyset paging for batch jobs: up to limit games with id > afterID, in id order
+    List<GameData> listAfter(int afterID, int limit) throws DataAccessException;
     void update(GameData game) throws DataAccessException;
+    //compare-and-set: writes only if the stored game is still at expectedVersion, which it then bumps;
+    //false means someone else updated it first
+    boolean update(int expectedVersion, GameData game) throws DataAccessException;
+    //moves played, kept apart from the board so game rows and LOAD_GAME stay the size of one position
+    void addMove(int gameID, ChessMove move) throws DataAccessException;
+    //in the order they were added
+    List<ChessMove> moves(int gameID) throws DataAccessException;
 }
@@ -1,19 +1,44 @@
 package dataaccess;
 
+import chess.ChessMove;
+
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import model.GameData;
 
 
 public class GameDataDAO implements GameDAO{
     private final ConcurrentHashMap<Integer, GameData> games = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, List<ChessMove>> moves = new ConcurrentHashMap<>();
     private final AtomicInteger nextId = new AtomicInteger(1);
+    private final UndoLog undo;
+
+    public GameDataDAO() {
+        this(new UndoLog());
+    }
+
+    GameDataDAO(UndoLog undo) {
+        this.undo = undo;
+    }
 
     @Override
     public void clear(){
+        if (undo.active()) {
+            var gamesBefore = new HashMap<>(games);
+            var movesBefore = new HashMap<>(moves);
+            undo.record(() -> {
+                games.putAll(gamesBefore);
+                moves.putAll(movesBefore);
+            });
+        }
         games.clear();
+        moves.clear();
         nextId.set(1);
     }
 
@@ -26,6 +51,8 @@ public class GameDataDAO implements GameDAO{
         int id = nextId.getAndIncrement();
         var game = new GameData(id, null,null,gameName, null);
         games.put(id,game);
+        //the id stays used, as AUTO_INCREMENT does after a rollback
+        undo.record(() -> games.remove(id));
         return game;
     }
 
@@ -39,6 +66,15 @@ public class GameDataDAO implements GameDAO{
         return new ArrayList<>(games.values());
     }
 
+    @Override
+    public List<GameData> listAfter(int afterID, int limit) {
+        return games.values().stream()
+                .filter(g -> g.gameID() > afterID)
+                .sorted(Comparator.comparingInt(GameData::gameID))
+                .limit(limit)
+                .toList();
+    }
+
     @Override
     public void update(GameData game) throws DataAccessException {
         if (game == null) {
@@ -46,10 +82,58 @@ public class GameDataDAO implements GameDAO{
         }
 
         int id = game.gameID();
-        if (!games.containsKey(id)) {
+        var before = games.get(id);
+        var current = games.computeIfPresent(id, (k, old) -> withVersion(game, old.version() + 1));
+        if (current == null) {
             throw new DataAccessException("game not found: " + id);
         }
+        undo.record(() -> games.replace(id, current, before));
+    }
 
-        games.put(id,game);
+    @Override
+    public boolean update(int expectedVersion, GameData game) throws DataAccessException {
+        if (game == null) {
+            throw new DataAccessException("null game");
+        }
+
+        int id = game.gameID();
+        var current = games.get(id);
+        if (current == null) {
+            throw new DataAccessException("game not found: " + id);
+        }
+        if (current.version() != expectedVersion) {
+            return false;
+        }
+        var next = withVersion(game, expectedVersion + 1);
+        if (!games.replace(id, current, next)) {
+            return false;
+        }
+        undo.record(() -> games.replace(id, next, current));
+        return true;
+    }
+
+    @Override
+    public void addMove(int gameID, ChessMove move) throws DataAccessException {
+        if (!games.containsKey(gameID)) {
+            throw new DataAccessException("game not found: " + gameID);
+        }
+        var list = moves.computeIfAbsent(gameID, k -> new CopyOnWriteArrayList<>());
+        list.add(move);
+        undo.record(() -> {
+            int last = list.lastIndexOf(move);
+            if (last >= 0) {
+                list.remove(last);
+            }
+        });
+    }
+
+    @Override
+    public List<ChessMove> moves(int gameID) {
+        return List.copyOf(moves.getOrDefault(gameID, List.of()));
+    }
+
+    private static GameData withVersion(GameData game, int version) {
+        return new GameData(game.gameID(), game.whiteUsername(), game.blackUsername(),
+                game.gameName(), game.game(), version);
     }
 }
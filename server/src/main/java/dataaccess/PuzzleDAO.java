@@ -0,0 +1,15 @@
+package dataaccess;
+
+import model.Puzzle;
+
+import java.util.Collection;
+
+public interface PuzzleDAO {
+    void clear() throws DataAccessException;
+    //false if a puzzle with the same position already exists
+    boolean insert(Puzzle puzzle) throws DataAccessException;
+    Collection<Puzzle> list() throws DataAccessException;
+    //last game ID a mining job fully processed, 0 if it never ran
+    int checkpoint(String job) throws DataAccessException;
+    void saveCheckpoint(String job, int lastGameID) throws DataAccessException;
+}
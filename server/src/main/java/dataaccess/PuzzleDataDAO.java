@@ -0,0 +1,70 @@
+package dataaccess;
+
+import model.Puzzle;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class PuzzleDataDAO implements PuzzleDAO {
+    private final ConcurrentHashMap<String, Puzzle> puzzles = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> checkpoints = new ConcurrentHashMap<>();
+    private final UndoLog undo;
+
+    public PuzzleDataDAO() {
+        this(new UndoLog());
+    }
+
+    PuzzleDataDAO(UndoLog undo) {
+        this.undo = undo;
+    }
+
+    @Override
+    public void clear() {
+        if (undo.active()) {
+            var puzzlesBefore = new HashMap<>(puzzles);
+            var checkpointsBefore = new HashMap<>(checkpoints);
+            undo.record(() -> {
+                puzzles.putAll(puzzlesBefore);
+                checkpoints.putAll(checkpointsBefore);
+            });
+        }
+        puzzles.clear();
+        checkpoints.clear();
+    }
+
+    @Override
+    public boolean insert(Puzzle puzzle) throws DataAccessException {
+        if (puzzle == null || puzzle.fen() == null) {
+            throw new DataAccessException("puzzle fields null");
+        }
+        if (puzzles.putIfAbsent(puzzle.fen(), puzzle) != null) {
+            return false;
+        }
+        undo.record(() -> puzzles.remove(puzzle.fen(), puzzle));
+        return true;
+    }
+
+    @Override
+    public Collection<Puzzle> list() {
+        return new ArrayList<>(puzzles.values());
+    }
+
+    @Override
+    public int checkpoint(String job) {
+        return checkpoints.getOrDefault(job, 0);
+    }
+
+    @Override
+    public void saveCheckpoint(String job, int lastGameID) {
+        var before = checkpoints.put(job, lastGameID);
+        undo.record(() -> {
+            if (before == null) {
+                checkpoints.remove(job);
+            } else {
+                checkpoints.put(job, before);
+            }
+        });
+    }
+}
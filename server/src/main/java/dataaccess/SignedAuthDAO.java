@@ -0,0 +1,160 @@
+package dataaccess;
+
+import model.AuthData;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Auth tokens that carry their own proof, for running several server nodes
+ * without a shared token lookup.
+ * <p>
+ * A token is {@code payload.signature}. The payload holds the issue time, the
+ * expiry, a random nonce and the username. The signature is an HMAC-SHA256 of the
+ * payload under a secret that every node shares. Checking a token needs no I/O.
+ * Logging out puts the token in a revocation set until it would have expired
+ * anyway. {@link #clear()} rejects every token issued before it.
+ * <p>
+ * Revocations are local to the node that handled the logout, so the token
+ * lifetime bounds how long a logged-out token still works elsewhere.
+ */
+public class SignedAuthDAO implements AuthDAO {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final int NONCE_BYTES = 12;
+    //prune expired revocations once the set grows past this
+    private static final int PRUNE_AT = 1024;
+
+    private final SecretKeySpec key;
+    private final long ttlMillis;
+    private final ThreadLocal<Mac> macs;
+    private final SecureRandom random = new SecureRandom();
+    //revoked token -> when it expires
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private volatile long notBefore;
+
+    public SignedAuthDAO(byte[] secret, long ttlMillis) {
+        if (secret == null || secret.length < 32) {
+            throw new IllegalArgumentException("token secret must be at least 32 bytes");
+        }
+        this.key = new SecretKeySpec(secret.clone(), ALGORITHM);
+        this.ttlMillis = ttlMillis;
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                var mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Override
+    public void clear() {
+        notBefore = System.currentTimeMillis();
+        revoked.clear();
+    }
+
+    /**
+     * Signed tokens are never stored, so there is nothing to insert. Only
+     * tokens this class signed are accepted.
+     */
+    @Override
+    public void insert(AuthData auth) throws DataAccessException {
+        if (auth == null || auth.authToken() == null || auth.username() == null) {
+            throw new DataAccessException("auth fields null");
+        }
+        var found = find(auth.authToken());
+        if (found == null || !found.username().equals(auth.username())) {
+            throw new DataAccessException("not a token signed by this server");
+        }
+    }
+
+    @Override
+    public AuthData issue(String username) throws DataAccessException {
+        if (username == null) {
+            throw new DataAccessException("auth fields null");
+        }
+        long now = System.currentTimeMillis();
+        byte[] nonce = new byte[NONCE_BYTES];
+        random.nextBytes(nonce);
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = ByteBuffer.allocate(16 + NONCE_BYTES + name.length)
+                .putLong(now)
+                .putLong(now + ttlMillis)
+                .put(nonce)
+                .put(name)
+                .array();
+        String token = ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload));
+        return new AuthData(token, username);
+    }
+
+    @Override
+    public AuthData find(String authToken) {
+        if (authToken == null) {
+            return null;
+        }
+        int dot = authToken.indexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(authToken.substring(0, dot));
+            signature = DECODER.decode(authToken.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (payload.length < 16 + NONCE_BYTES || !MessageDigest.isEqual(sign(payload), signature)) {
+            return null;
+        }
+        var buf = ByteBuffer.wrap(payload);
+        long issuedAt = buf.getLong();
+        long expiresAt = buf.getLong();
+        long now = System.currentTimeMillis();
+        if (now >= expiresAt || issuedAt < notBefore || revoked.containsKey(authToken)) {
+            return null;
+        }
+        String username = new String(payload, 16 + NONCE_BYTES, payload.length - 16 - NONCE_BYTES,
+                StandardCharsets.UTF_8);
+        return new AuthData(authToken, username);
+    }
+
+    @Override
+    public void delete(String authToken) {
+        var auth = find(authToken);
+        if (auth == null) {
+            return;
+        }
+        long expiresAt = ByteBuffer.wrap(DECODER.decode(authToken.substring(0, authToken.indexOf('.'))))
+                .getLong(8);
+        revoked.put(authToken, expiresAt);
+        if (revoked.size() > PRUNE_AT) {
+            long now = System.currentTimeMillis();
+            revoked.values().removeIf(expiry -> expiry <= now);
+        }
+    }
+
+    /**
+     * @return how many logged-out tokens are still being remembered
+     */
+    public int revocations() {
+        return revoked.size();
+    }
+
+    private byte[] sign(byte[] payload) {
+        return macs.get().doFinal(payload);
+    }
+}
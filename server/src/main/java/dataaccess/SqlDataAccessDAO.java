@@ -2,13 +2,34 @@ package dataaccess;
 
 import model.GameData;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class SqlDataAccessDAO implements DataAccess{
+    //set to serve active games from memory and write them back shortly after they change;
+    //the cache must be the table's only writer, so it stays off with signed tokens, which
+    //exist to run several nodes against one database
+    public static final String GAME_CACHE_PROPERTY = "chess.db.gameCache";
+    private static final int GAME_CACHE_SIZE = 1024;
+    private static final long GAME_IDLE_MILLIS = 10 * 60_000;
+    private static final long GAME_FLUSH_MILLIS = 200;
+    //token lookups; a token deleted elsewhere keeps working here for at most the TTL
+    private static final int AUTH_CACHE_SIZE = 10_000;
+    private static final long AUTH_TTL_MILLIS = 60_000;
+    //set on every node to switch to signed tokens, checked without touching the database
+    private static final String TOKEN_SECRET_ENV = "CHESS_TOKEN_SECRET";
+    private static final long TOKEN_LIFETIME_MILLIS = 60 * 60_000;
+
     private final UserDAO users;
     private final AuthDAO auths;
     private final GameDAO games;
+    private final PuzzleDAO puzzles;
+    //one I/O thread per pooled connection; more would only queue on the pool
+    private final ExecutorService io;
+    private final AsyncDataAccess async;
 
     public SqlDataAccessDAO() {
         try {
@@ -16,18 +37,49 @@ public class SqlDataAccessDAO implements DataAccess{
             SqlUserDAO.createTable();
             SqlAuthDAO.createTable();
             SqlGameDAO.createTable();
+            SqlPuzzleDAO.createTable();
 
             this.users = new SqlUserDAO();
-            this.auths = new SqlAuthDAO();
-            this.games = new SqlGameDAO();
+            this.auths = authStore();
+            this.games = gameStore();
+            this.puzzles = new SqlPuzzleDAO();
+            this.io = Executors.newFixedThreadPool(DatabaseManager.poolStats().maxSize(),
+                    Thread.ofPlatform().name("db-io-", 0).daemon(true).factory());
+            this.async = new AsyncDataAccess(this, io);
         } catch (DataAccessException e) {
             throw new RuntimeException("bootstrap failed", e);
         }
     }
 
+    private static AuthDAO authStore() {
+        if (!signedTokens()) {
+            return new CachingAuthDAO(new SqlAuthDAO(), AUTH_CACHE_SIZE, AUTH_TTL_MILLIS);
+        }
+        String secret = System.getenv(TOKEN_SECRET_ENV);
+        return new SignedAuthDAO(secret.getBytes(StandardCharsets.UTF_8), TOKEN_LIFETIME_MILLIS);
+    }
+
+    private static GameDAO gameStore() {
+        if (!Boolean.getBoolean(GAME_CACHE_PROPERTY)) {
+            return new SqlGameDAO();
+        }
+        if (signedTokens()) {
+            System.out.printf("%s ignored: %s is set, so other nodes may write games too%n",
+                    GAME_CACHE_PROPERTY, TOKEN_SECRET_ENV);
+            return new SqlGameDAO();
+        }
+        return new CachingGameDAO(new SqlGameDAO(), GAME_CACHE_SIZE, GAME_IDLE_MILLIS, GAME_FLUSH_MILLIS);
+    }
+
+    private static boolean signedTokens() {
+        String secret = System.getenv(TOKEN_SECRET_ENV);
+        return secret != null && !secret.isBlank();
+    }
+
     @Override
     public void clearAll() throws DataAccessException {
         auths.clear();
+        puzzles.clear();
         games.clear();
         users.clear();
     }
@@ -41,4 +93,24 @@ public class SqlDataAccessDAO implements DataAccess{
     @Override public GameDAO games() {
         return games;
     }
+    @Override public PuzzleDAO puzzles() {
+        return puzzles;
+    }
+
+    @Override public AsyncDataAccess async() {
+        return async;
+    }
+
+    @Override
+    public <T, E extends Exception> T inTransaction(Work<T, E> work) throws E, DataAccessException {
+        return DatabaseManager.inTransaction(work, this);
+    }
+
+    @Override
+    public void close() throws DataAccessException {
+        io.shutdown();
+        if (games instanceof CachingGameDAO cached) {
+            cached.close();
+        }
+    }
 }
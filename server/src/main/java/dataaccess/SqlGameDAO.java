@@ -1,12 +1,15 @@
 package dataaccess;
 
 import chess.ChessGame;
+import chess.ChessMove;
 import com.google.gson.Gson;
+import engine.Notation;
 import model.GameData;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 public class SqlGameDAO implements GameDAO {
 
@@ -20,13 +23,37 @@ public class SqlGameDAO implements GameDAO {
               whiteUsername VARCHAR(64),
               blackUsername VARCHAR(64),
               gameJson MEDIUMTEXT,
+              version INT NOT NULL DEFAULT 0,
               FOREIGN KEY (whiteUsername) REFERENCES users(username) ON DELETE SET NULL,
               FOREIGN KEY (blackUsername) REFERENCES users(username) ON DELETE SET NULL
             ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
         """;
-        try (var conn = DatabaseManager.getConnection();
-             var stmt = conn.prepareStatement(sql)) {
-            stmt.executeUpdate();
+        //one row per move, appended as it is played, in coordinate notation
+        final var moves = """
+            CREATE TABLE IF NOT EXISTS game_moves (
+              id INT AUTO_INCREMENT PRIMARY KEY,
+              gameID INT NOT NULL,
+              move VARCHAR(5) NOT NULL,
+              INDEX (gameID, id),
+              FOREIGN KEY (gameID) REFERENCES games(id) ON DELETE CASCADE
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+        """;
+        try (var conn = DatabaseManager.getConnection()) {
+            try (var stmt = conn.prepareStatement(sql)) {
+                stmt.executeUpdate();
+            }
+            try (var stmt = conn.prepareStatement(moves)) {
+                stmt.executeUpdate();
+            }
+            //tables created before games were versioned
+            try (var columns = conn.getMetaData().getColumns(conn.getCatalog(), null, "games", "version")) {
+                if (!columns.next()) {
+                    try (var alter = conn.prepareStatement(
+                            "ALTER TABLE games ADD COLUMN version INT NOT NULL DEFAULT 0")) {
+                        alter.executeUpdate();
+                    }
+                }
+            }
         } catch (SQLException e) {
             throw new DataAccessException("Error creating game table", e);
         }
@@ -36,6 +63,9 @@ public class SqlGameDAO implements GameDAO {
     public void clear() throws DataAccessException {
         // TRUNCATE may fail with FKs; DELETE works everywhere, then reset AUTO_INCREMENT (optional)
         try (var conn = DatabaseManager.getConnection()) {
+            try (var delete = conn.prepareStatement("DELETE FROM game_moves")) {
+                delete.executeUpdate();
+            }
             try (var delete = conn.prepareStatement("DELETE FROM games")) {
                 delete.executeUpdate();
             }
@@ -73,7 +103,7 @@ public class SqlGameDAO implements GameDAO {
     @Override
     public GameData find(int gameID) throws DataAccessException {
         final var sql = """
-            SELECT id, name, whiteUsername, blackUsername, gameJson
+            SELECT id, name, whiteUsername, blackUsername, gameJson, version
             FROM games WHERE id = ?
         """;
         try (var conn = DatabaseManager.getConnection();
@@ -92,7 +122,7 @@ public class SqlGameDAO implements GameDAO {
 
     @Override
     public Collection<GameData> list() throws DataAccessException {
-        final var sql = "SELECT id, name, whiteUsername, blackUsername, gameJson FROM games";
+        final var sql = "SELECT id, name, whiteUsername, blackUsername, gameJson, version FROM games";
         var games = new ArrayList<GameData>();
         try (var conn = DatabaseManager.getConnection();
              var stmt = conn.prepareStatement(sql);
@@ -106,13 +136,90 @@ public class SqlGameDAO implements GameDAO {
         return games;
     }
 
+    @Override
+    public List<GameData> listAfter(int afterID, int limit) throws DataAccessException {
+        final var sql = """
+            SELECT id, name, whiteUsername, blackUsername, gameJson, version
+            FROM games WHERE id > ? ORDER BY id LIMIT ?
+        """;
+        var games = new ArrayList<GameData>();
+        try (var conn = DatabaseManager.getConnection();
+             var stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, afterID);
+            stmt.setInt(2, limit);
+            try (var rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    games.add(mapRow(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Error listing games", e);
+        }
+        return games;
+    }
+
     @Override
     public void update(GameData game) throws DataAccessException {
         final var sql = """
             UPDATE games
-            SET name = ?, whiteUsername = ?, blackUsername = ?, gameJson = ?
+            SET name = ?, whiteUsername = ?, blackUsername = ?, gameJson = ?, version = version + 1
             WHERE id = ?
         """;
+        if (write(sql, game, null) == 0) {
+            throw new DataAccessException("game not found: " + game.gameID());
+        }
+    }
+
+    @Override
+    public boolean update(int expectedVersion, GameData game) throws DataAccessException {
+        final var sql = """
+            UPDATE games
+            SET name = ?, whiteUsername = ?, blackUsername = ?, gameJson = ?, version = version + 1
+            WHERE id = ? AND version = ?
+        """;
+        if (write(sql, game, expectedVersion) == 1) {
+            return true;
+        }
+        //no row matched: either the version moved on or the game is gone
+        if (find(game.gameID()) == null) {
+            throw new DataAccessException("game not found: " + game.gameID());
+        }
+        return false;
+    }
+
+    @Override
+    public void addMove(int gameID, ChessMove move) throws DataAccessException {
+        final var sql = "INSERT INTO game_moves (gameID, move) VALUES (?, ?)";
+        try (var conn = DatabaseManager.getConnection();
+             var stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, gameID);
+            stmt.setString(2, Notation.of(move));
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new DataAccessException("Error recording move", e);
+        }
+    }
+
+    @Override
+    public List<ChessMove> moves(int gameID) throws DataAccessException {
+        final var sql = "SELECT move FROM game_moves WHERE gameID = ? ORDER BY id";
+        var moves = new ArrayList<ChessMove>();
+        try (var conn = DatabaseManager.getConnection();
+             var stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, gameID);
+            try (var rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    moves.add(Notation.parse(rs.getString("move")));
+                }
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Error reading moves", e);
+        }
+        return moves;
+    }
+
+    //helper, runs one of the updates above; returns rows changed
+    private int write(String sql, GameData game, Integer expectedVersion) throws DataAccessException {
         try (var conn = DatabaseManager.getConnection();
              var stmt = conn.prepareStatement(sql)) {
 
@@ -128,11 +235,10 @@ public class SqlGameDAO implements GameDAO {
                 stmt.setString(4, json);
             }
             stmt.setInt(5, game.gameID());
-
-            int updated = stmt.executeUpdate();
-            if (updated == 0) {
-                throw new DataAccessException("game not found: " + game.gameID());
+            if (expectedVersion != null) {
+                stmt.setInt(6, expectedVersion);
             }
+            return stmt.executeUpdate();
         } catch (SQLException e) {
             throw new DataAccessException("Error updating game", e);
         }
@@ -146,7 +252,8 @@ public class SqlGameDAO implements GameDAO {
                 rs.getString("whiteUsername"),
                 rs.getString("blackUsername"),
                 rs.getString("name"),
-                game
+                game,
+                rs.getInt("version")
         );
     }
 }
@@ -0,0 +1,130 @@
+package dataaccess;
+
+import model.Puzzle;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+
+public class SqlPuzzleDAO implements PuzzleDAO {
+
+    static void createTable() throws DataAccessException {
+        final var puzzles = """
+            CREATE TABLE IF NOT EXISTS puzzles (
+              id INT AUTO_INCREMENT PRIMARY KEY,
+              gameID INT NOT NULL,
+              ply INT NOT NULL,
+              fen VARCHAR(100) NOT NULL UNIQUE,
+              solution VARCHAR(8) NOT NULL,
+              score INT NOT NULL,
+              mateIn INT NOT NULL,
+              FOREIGN KEY (gameID) REFERENCES games(id) ON DELETE CASCADE
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+        """;
+        final var checkpoints = """
+            CREATE TABLE IF NOT EXISTS puzzle_checkpoints (
+              job VARCHAR(64) PRIMARY KEY,
+              lastGameID INT NOT NULL
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+        """;
+        try (var conn = DatabaseManager.getConnection()) {
+            try (var stmt = conn.prepareStatement(puzzles)) {
+                stmt.executeUpdate();
+            }
+            try (var stmt = conn.prepareStatement(checkpoints)) {
+                stmt.executeUpdate();
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Error creating puzzle tables", e);
+        }
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        try (var conn = DatabaseManager.getConnection()) {
+            try (var stmt = conn.prepareStatement("DELETE FROM puzzles")) {
+                stmt.executeUpdate();
+            }
+            try (var stmt = conn.prepareStatement("DELETE FROM puzzle_checkpoints")) {
+                stmt.executeUpdate();
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Error clearing puzzles", e);
+        }
+    }
+
+    @Override
+    public boolean insert(Puzzle puzzle) throws DataAccessException {
+        if (puzzle == null || puzzle.fen() == null) {
+            throw new DataAccessException("puzzle fields null");
+        }
+        final var sql = """
+            INSERT IGNORE INTO puzzles (gameID, ply, fen, solution, score, mateIn)
+            VALUES (?, ?, ?, ?, ?, ?)
+        """;
+        try (var conn = DatabaseManager.getConnection();
+             var stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, puzzle.gameID());
+            stmt.setInt(2, puzzle.ply());
+            stmt.setString(3, puzzle.fen());
+            stmt.setString(4, puzzle.solution());
+            stmt.setInt(5, puzzle.score());
+            stmt.setInt(6, puzzle.mateIn());
+            return stmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            throw new DataAccessException("Error inserting puzzle", e);
+        }
+    }
+
+    @Override
+    public Collection<Puzzle> list() throws DataAccessException {
+        final var sql = "SELECT gameID, ply, fen, solution, score, mateIn FROM puzzles ORDER BY id";
+        var puzzles = new ArrayList<Puzzle>();
+        try (var conn = DatabaseManager.getConnection();
+             var stmt = conn.prepareStatement(sql);
+             var rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                puzzles.add(new Puzzle(
+                        rs.getInt("gameID"),
+                        rs.getInt("ply"),
+                        rs.getString("fen"),
+                        rs.getString("solution"),
+                        rs.getInt("score"),
+                        rs.getInt("mateIn")));
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Error listing puzzles", e);
+        }
+        return puzzles;
+    }
+
+    @Override
+    public int checkpoint(String job) throws DataAccessException {
+        final var sql = "SELECT lastGameID FROM puzzle_checkpoints WHERE job = ?";
+        try (var conn = DatabaseManager.getConnection();
+             var stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, job);
+            try (var rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt("lastGameID") : 0;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Error reading checkpoint", e);
+        }
+    }
+
+    @Override
+    public void saveCheckpoint(String job, int lastGameID) throws DataAccessException {
+        final var sql = """
+            INSERT INTO puzzle_checkpoints (job, lastGameID) VALUES (?, ?)
+            ON DUPLICATE KEY UPDATE lastGameID = VALUES(lastGameID)
+        """;
+        try (var conn = DatabaseManager.getConnection();
+             var stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, job);
+            stmt.setInt(2, lastGameID);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new DataAccessException("Error saving checkpoint", e);
+        }
+    }
+}
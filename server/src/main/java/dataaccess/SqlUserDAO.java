@@ -43,7 +43,10 @@ public class SqlUserDAO implements UserDAO {
         try (var conn = DatabaseManager.getConnection();
              var stmt = conn.prepareStatement(sql)) {
 
-            String hash = org.mindrot.jbcrypt.BCrypt.hashpw(user.password(), org.mindrot.jbcrypt.BCrypt.gensalt());
+            //the service hashes on its password pool; only hash here for callers that didn't
+            String hash = isBcryptHash(user.password())
+                    ? user.password()
+                    : BCrypt.hashpw(user.password(), BCrypt.gensalt());
 
             stmt.setString(1, user.username());
             stmt.setString(2, hash);
@@ -77,4 +80,8 @@ public class SqlUserDAO implements UserDAO {
             throw new DataAccessException("Error finding user", e);
         }
     }
+
+    private static boolean isBcryptHash(String s) {
+        return s != null && s.length() == 60 && s.matches("\\$2[aby]?\\$\\d{2}\\$[./A-Za-z0-9]{53}");
+    }
 }
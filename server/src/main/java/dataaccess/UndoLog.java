@@ -0,0 +1,44 @@
+package dataaccess;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * How to reverse the in-memory writes made by a transaction on this thread.
+ * <p>
+ * The in-memory DAOs record an undo step for each write while a transaction is
+ * open. A transaction that throws runs the steps newest first; one that returns
+ * just forgets them. Writes outside a transaction record nothing.
+ */
+final class UndoLog {
+
+    private final ThreadLocal<Deque<Runnable>> current = new ThreadLocal<>();
+
+    boolean active() {
+        return current.get() != null;
+    }
+
+    void begin() {
+        current.set(new ArrayDeque<>());
+    }
+
+    void commit() {
+        current.remove();
+    }
+
+    void rollback() {
+        var steps = current.get();
+        current.remove();
+        if (steps != null) {
+            //pushed newest first, so this undoes in reverse order
+            steps.forEach(Runnable::run);
+        }
+    }
+
+    void record(Runnable undo) {
+        var steps = current.get();
+        if (steps != null) {
+            steps.push(undo);
+        }
+    }
+}
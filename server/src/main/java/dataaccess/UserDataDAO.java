@@ -1,13 +1,30 @@
 package dataaccess;
 
+import java.util.HashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import model.UserData;
 import org.eclipse.jetty.server.Authentication;
 
 public class UserDataDAO implements UserDAO {
     private final ConcurrentHashMap<String, UserData> users = new ConcurrentHashMap<>();
+    private final UndoLog undo;
 
-    @Override public void clear() { users.clear(); }
+    public UserDataDAO() {
+        this(new UndoLog());
+    }
+
+    UserDataDAO(UndoLog undo) {
+        this.undo = undo;
+    }
+
+    @Override
+    public void clear() {
+        if (undo.active()) {
+            var before = new HashMap<>(users);
+            undo.record(() -> users.putAll(before));
+        }
+        users.clear();
+    }
 
     @Override
     public void insert(UserData user) throws DataAccessException {
@@ -18,6 +35,7 @@ public class UserDataDAO implements UserDAO {
         if (prior != null) {
             throw new DataAccessException("username taken");
         }
+        undo.record(() -> users.remove(user.username(), user));
     }
 
     @Override
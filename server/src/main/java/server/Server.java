@@ -7,6 +7,9 @@ import model.UserData;
 import model.GameData;
 import dataaccess.DataAccess;
 import dataaccess.SqlDataAccessDAO;
+import service.AnalysisService;
+import service.EnginePool;
+import service.PasswordPool;
 import service.ServiceException;
 import service.UserService;
 import service.GameService;
@@ -20,17 +23,37 @@ public class Server {
     private final Javalin javalin;
     private final Gson gson = new Gson();
     private final DataAccess db = new SqlDataAccessDAO();
-    private final UserService userSvc = new UserService(db);
+    private final PasswordPool passwordPool = PasswordPool.forAvailableCores();
+    private final UserService userSvc = new UserService(db, passwordPool);
     private final service.ClearService clearSvc = new service.ClearService(db);
     private final GameService gameSvc = new GameService(db);
+    private final EnginePool enginePool = EnginePool.forAvailableCores();
+    private final AnalysisService analysisSvc = new AnalysisService(db, enginePool, 4096);
+    private final GameWebSocketHandler wsHandler;
+
+    //-Dchess.virtualThreads=true runs handlers on virtual threads
+    public static final String VIRTUAL_THREADS_PROPERTY = "chess.virtualThreads";
 
     public Server() {
+        this(Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY));
+    }
+
+    /**
+     * @param virtualThreads run every HTTP request and websocket command on its own
+     *                       virtual thread instead of Jetty's platform thread pool.
+     *                       Database concurrency is still capped by the connection pool.
+     */
+    public Server(boolean virtualThreads) {
+        wsHandler = new GameWebSocketHandler(gameSvc, enginePool, virtualThreads);
         javalin = Javalin.create(config -> {
+            config.useVirtualThreads = virtualThreads;
             config.staticFiles.add("web");
             config.jetty.modifyWebSocketServletFactory(wsFactory -> {
                 wsFactory.setIdleTimeout(Duration.ofMinutes(30));
             });
         });
+        //a logged-out token must not keep driving an open game
+        userSvc.onLogout(wsHandler::revoke);
         // Register your endpoints and exception handlers here.
 //push
         // Exception handlers that always return a JSON { "message": ... }
@@ -111,13 +134,41 @@ public class Server {
                     ctx.status(se.statusCode()).result(gson.toJson(new Message(se.getMessage())));
             }
         });
+        //seat the computer opponent
+        javalin.put("/game/bot", ctx -> {
+            try {
+                var token = ctx.header("authorization");
+                var req = gson.fromJson(ctx.body(), BotReq.class);
+                var color = parseColor(req.playerColor());
+                gameSvc.joinBot(token, color, req.gameID());
+                long millis = (req.moveMillis() == null) ? EnginePool.DEFAULT_MOVE_MILLIS : req.moveMillis();
+                enginePool.open(req.gameID(), millis);
+                ctx.status(200).result(gson.toJson(new Empty()));
+            } catch (ServiceException se) {
+                ctx.status(se.statusCode()).result(gson.toJson(new Message(se.getMessage())));
+            }
+        });
+        //engine analysis, answered when the search finishes
+        javalin.post("/analyze", ctx -> {
+            try {
+                var token = ctx.header("authorization");
+                var req = gson.fromJson(ctx.body(), AnalyzeReq.class);
+                if (req == null) {
+                    throw new ServiceException(400, "Error: bad request");
+                }
+                var analysis = analysisSvc.analyze(token, req.gameID(), req.fen(), req.depth(), req.millis());
+                ctx.future(() -> analysis.thenAccept(a -> ctx.status(200).result(gson.toJson(a))));
+            } catch (ServiceException se) {
+                ctx.status(se.statusCode()).result(gson.toJson(new Message(se.getMessage())));
+            }
+        });
         //websocket stuff?
-        var wsHandler = new GameWebSocketHandler(gameSvc);
         javalin.ws("/ws", ws -> {
             ws.onConnect(wsHandler::onConnect);
             ws.onClose(wsHandler::onClose);
             ws.onError(wsHandler::onError);
             ws.onMessage(wsHandler::onMessage);
+            ws.onBinaryMessage(wsHandler::onBinaryMessage);
         });
     }
     //hurray
@@ -128,6 +179,14 @@ public class Server {
 
     public void stop() {
         javalin.stop();
+        wsHandler.shutdown();
+        enginePool.shutdown();
+        passwordPool.shutdown();
+        try {
+            db.close();
+        } catch (DataAccessException e) {
+            System.out.printf("Failed to write back games on shutdown: %s%n", e.getMessage());
+        }
     }
 
     private record Message(String message) {}
@@ -137,6 +196,8 @@ public class Server {
     private record CreateRes(Integer gameID) {}
     private record ListRes(java.util.Collection<GameData> games) {}
     private record JoinReq(String playerColor, Integer gameID) {}
+    private record AnalyzeReq(Integer gameID, String fen, Integer depth, Long millis) {}
+    private record BotReq(String playerColor, Integer gameID, Long moveMillis) {}
 
     private static chess.ChessGame.TeamColor parseColor(String s) {
         if (s == null){
@@ -0,0 +1,184 @@
+package service;
+
+import chess.ChessGame;
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import engine.Engine;
+import engine.Fen;
+import engine.Notation;
+import engine.Zobrist;
+import model.AuthData;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Evaluations and best moves on request.
+ * <p>
+ * Searches run on the shared {@link EnginePool}. Finished results are kept in an
+ * LRU cache keyed by Zobrist key, and a cached result answers any later request
+ * that asks for no more depth or time than it was searched with. Requests for a
+ * position and budget that is already being searched wait on that search
+ * instead of starting another.
+ */
+public class AnalysisService {
+
+    public static final int MAX_DEPTH = 12;
+    public static final long MAX_MILLIS = 10_000;
+    public static final long DEFAULT_MILLIS = 1000;
+
+    public record Analysis(String fen, String bestMove, int score, int mateIn, int depth, long nodes,
+                           List<String> pv, boolean cached) {}
+
+    //a search budget is either a depth or a time, never both; a depth search still
+    //stops at MAX_MILLIS so it can't hold a worker that bot moves are waiting for
+    private record Budget(long key, int depth, long millis) {
+        Engine.Limits limits() {
+            return depth > 0 ? new Engine.Limits(depth, MAX_MILLIS) : Engine.Limits.millis(millis);
+        }
+    }
+
+    //what a finished search is known to cover; a depth search cut short by the cap only
+    //covers the depth it completed, but it did run for the whole MAX_MILLIS
+    private record Cached(Engine.Result result, boolean cutShort, long millis) {
+        static Cached of(Budget b, Engine.Result result) {
+            boolean cutShort = b.depth() > 0 && result.depth() < b.depth() && !result.isMate();
+            return new Cached(result, cutShort, cutShort ? MAX_MILLIS : b.millis());
+        }
+
+        boolean covers(Budget b) {
+            if (result.isMate()) {
+                return true;
+            }
+            //judged by the depth completed, not the depth asked for
+            return b.depth() > 0 ? result.depth() >= b.depth() : millis >= b.millis();
+        }
+    }
+
+    private final DataAccess db;
+    private final EnginePool pool;
+    private final Map<Long, Cached> cache;
+    private final Map<Budget, CompletableFuture<Engine.Result>> inFlight = new ConcurrentHashMap<>();
+
+    public AnalysisService(DataAccess db, EnginePool pool, int cacheSize) {
+        this.db = db;
+        this.pool = pool;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Cached> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Analyzes a stored game's current position, or a FEN if no game ID is given.
+     * With neither depth nor millis the search gets {@link #DEFAULT_MILLIS}.
+     */
+    public CompletableFuture<Analysis> analyze(String authToken, Integer gameID, String fen,
+                                               Integer depth, Long millis)
+            throws ServiceException, DataAccessException {
+        requireAuth(authToken);
+        ChessGame position = resolve(gameID, fen);
+        if ((depth != null && (depth < 1 || depth > MAX_DEPTH))
+                || (millis != null && (millis < 1 || millis > MAX_MILLIS))) {
+            throw new ServiceException(400, "Error: depth must be 1-" + MAX_DEPTH
+                    + " and millis 1-" + MAX_MILLIS);
+        }
+
+        long key = Zobrist.key(position);
+        var budget = (depth != null)
+                ? new Budget(key, depth, 0)
+                : new Budget(key, 0, (millis != null) ? millis : DEFAULT_MILLIS);
+        String positionFen = Fen.format(position);
+
+        Cached hit;
+        synchronized (cache) {
+            hit = cache.get(key);
+        }
+        if (hit != null && hit.covers(budget)) {
+            return CompletableFuture.completedFuture(toAnalysis(positionFen, hit.result(), true));
+        }
+
+        var mine = new CompletableFuture<Engine.Result>();
+        var running = inFlight.putIfAbsent(budget, mine);
+        if (running != null) {
+            return running.thenApply(r -> toAnalysis(positionFen, r, false));
+        }
+        try {
+            pool.analyze(position, budget.limits()).whenComplete((result, err) -> {
+                if (err != null) {
+                    inFlight.remove(budget, mine);
+                    mine.completeExceptionally(err);
+                    return;
+                }
+                //cache before leaving the in-flight map so no request misses both
+                remember(key, Cached.of(budget, result));
+                inFlight.remove(budget, mine);
+                mine.complete(result);
+            });
+        } catch (ServiceException se) {
+            inFlight.remove(budget, mine);
+            mine.completeExceptionally(se);
+            throw se;
+        }
+        return mine.thenApply(r -> toAnalysis(positionFen, r, false));
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    //helpers
+    private void remember(long key, Cached fresh) {
+        synchronized (cache) {
+            var old = cache.get(key);
+            //keep whichever search went deeper
+            if (old == null || fresh.result().depth() >= old.result().depth()) {
+                cache.put(key, fresh);
+            }
+        }
+    }
+
+    private ChessGame resolve(Integer gameID, String fen) throws ServiceException, DataAccessException {
+        if (gameID != null) {
+            var gameData = db.games().find(gameID);
+            if (gameData == null) {
+                throw new ServiceException(400, "Error: bad request");
+            }
+            if (gameData.game() == null) {
+                var game = new ChessGame();
+                game.getBoard().resetBoard();
+                return game;
+            }
+            return new ChessGame(gameData.game());
+        }
+        if (fen == null || fen.isBlank()) {
+            throw new ServiceException(400, "Error: gameID or fen required");
+        }
+        try {
+            return Fen.parse(fen);
+        } catch (IllegalArgumentException e) {
+            throw new ServiceException(400, "Error: " + e.getMessage());
+        }
+    }
+
+    private static Analysis toAnalysis(String fen, Engine.Result r, boolean cached) {
+        return new Analysis(fen,
+                r.bestMove() == null ? null : Notation.of(r.bestMove()),
+                r.score(), r.mateIn(), r.depth(), r.nodes(), Notation.of(r.pv()), cached);
+    }
+
+    private String requireAuth(String token) throws ServiceException, DataAccessException {
+        AuthData a = db.auths().find(token);
+        if (a == null) {
+            throw new ServiceException(401, "Error: unauthorized");
+        }
+        return a.username();
+    }
+}
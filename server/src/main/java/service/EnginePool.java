@@ -0,0 +1,288 @@
+package service;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import engine.Engine;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs the computer opponent's searches on a fixed number of low priority
+ * worker threads, so bot games can never take more than that many cores away
+ * from request and websocket handling.
+ * <p>
+ * Each bot seat keeps its own engine for the whole game so the hash table
+ * carries over between moves. While the human is thinking the seat ponders on
+ * the current position if a worker is free; the ponder is interrupted as soon
+ * as the human moves or another game needs the worker.
+ * <p>
+ * Long-running evaluation streams get a smaller pool of their own. They never
+ * hold a worker that a bot move or an analysis request is waiting for.
+ */
+public class EnginePool {
+
+    public static final long DEFAULT_MOVE_MILLIS = 1000;
+    public static final long MAX_MOVE_MILLIS = 30_000;
+
+    private static final long PONDER_MILLIS = 60_000;
+    private static final int HASH_ENTRIES = 1 << 16;
+
+    private final int threads;
+    private final ThreadPoolExecutor workers;
+    //evaluation streams only; no queue, a stream either starts now or is refused
+    private final ThreadPoolExecutor streamers;
+    private final Map<Integer, Seat> seats = new ConcurrentHashMap<>();
+    //analysis requests reuse one engine per worker thread
+    private final ThreadLocal<Engine> analysisEngines =
+            ThreadLocal.withInitial(() -> new Engine(null, HASH_ENTRIES));
+
+    //one bot seat; the engine is only ever used by one task at a time
+    private static final class Seat {
+        final Engine engine = new Engine(null, HASH_ENTRIES);
+        final long moveMillis;
+        Future<?> ponder;
+        CompletableFuture<ChessMove> thinking;
+        Future<?> search;
+        //set by close(); a queued search checks it before starting
+        volatile boolean closed;
+
+        Seat(long moveMillis) {
+            this.moveMillis = moveMillis;
+        }
+    }
+
+    /**
+     * @param threads   searches that may run at once
+     * @param maxQueued bot moves allowed to wait for a worker before new ones are refused
+     */
+    public EnginePool(int threads, int maxQueued) {
+        this(threads, maxQueued, Math.max(1, threads / 2));
+    }
+
+    /**
+     * @param streamThreads evaluation streams that may run at once, on top of {@code threads}
+     */
+    public EnginePool(int threads, int maxQueued, int streamThreads) {
+        this.threads = threads;
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueued), lowPriority("engine-"));
+        this.streamers = new ThreadPoolExecutor(streamThreads, streamThreads, 0, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(), lowPriority("engine-stream-"));
+    }
+
+    /**
+     * Half the cores (at least one), leaving the rest for human games.
+     */
+    public static EnginePool forAvailableCores() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new EnginePool(threads, threads * 16);
+    }
+
+    /**
+     * Sets up the bot seat for a game, replacing any previous one.
+     */
+    public void open(int gameID, long moveMillis) {
+        long millis = Math.max(50, Math.min(MAX_MOVE_MILLIS, moveMillis));
+        var old = seats.put(gameID, new Seat(millis));
+        if (old != null) {
+            shut(old);
+        }
+    }
+
+    /**
+     * Drops the game's bot seat and its hash table, once the game is over or a
+     * player left. A move still being searched is cancelled.
+     */
+    public void close(int gameID) {
+        var seat = seats.remove(gameID);
+        if (seat != null) {
+            shut(seat);
+        }
+    }
+
+    public boolean isOpen(int gameID) {
+        return seats.containsKey(gameID);
+    }
+
+    /**
+     * Starts searching for the bot's move.
+     *
+     * @return the move once found, or null if the game has no open seat or the seat
+     * is already thinking; cancelled if the seat is closed before the move is found
+     * @throws ServiceException if the pool is saturated
+     */
+    public CompletableFuture<ChessMove> think(int gameID, ChessGame position) throws ServiceException {
+        var seat = seats.get(gameID);
+        if (seat == null) {
+            return null;
+        }
+        var result = new CompletableFuture<ChessMove>();
+        if (workers.getActiveCount() >= threads) {
+            preemptPonder();
+        }
+        //the engine makes and unmakes moves on what it searches, and the caller's game
+        //is the stored one that other threads copy and serialize
+        var own = new ChessGame(position);
+        synchronized (seat) {
+            if (seat.closed || (seat.thinking != null && !seat.thinking.isDone())) {
+                return null;
+            }
+            stopPonder(seat);
+            try {
+                seat.search = workers.submit(() -> {
+                    if (seat.closed) {
+                        result.cancel(false);
+                        return;
+                    }
+                    try {
+                        Engine.Result found;
+                        synchronized (seat.engine) {
+                            found = seat.engine.search(own, Engine.Limits.millis(seat.moveMillis));
+                        }
+                        if (seat.closed) {
+                            result.cancel(false);
+                        } else {
+                            result.complete(found.bestMove());
+                        }
+                    } catch (RuntimeException e) {
+                        result.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                throw new ServiceException(503, "Error: computer opponents are busy, try again shortly");
+            }
+            seat.thinking = result;
+        }
+        return result;
+    }
+
+    /**
+     * Searches the human's position in the background to warm the seat's hash
+     * table. Skipped when no worker is idle.
+     */
+    public void ponder(int gameID, ChessGame position) {
+        var seat = seats.get(gameID);
+        if (seat == null) {
+            return;
+        }
+        synchronized (seat) {
+            boolean pondering = seat.ponder != null && !seat.ponder.isDone();
+            if (pondering || workers.getActiveCount() + workers.getQueue().size() >= threads) {
+                return;
+            }
+            var own = new ChessGame(position);
+            try {
+                seat.ponder = workers.submit(() -> {
+                    synchronized (seat.engine) {
+                        seat.engine.search(own, Engine.Limits.millis(PONDER_MILLIS));
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                //busy, not worth pondering
+            }
+        }
+    }
+
+    /**
+     * Queues a one-off search that is not tied to a bot seat.
+     *
+     * @throws ServiceException if the pool is saturated
+     */
+    public CompletableFuture<Engine.Result> analyze(ChessGame position, Engine.Limits limits)
+            throws ServiceException {
+        var result = new CompletableFuture<Engine.Result>();
+        if (workers.getActiveCount() >= threads) {
+            preemptPonder();
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    result.complete(analysisEngines.get().search(position, limits));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new ServiceException(503, "Error: analysis queue is full, try again shortly");
+        }
+        return result;
+    }
+
+    /**
+     * Starts a search that reports every completed iteration. Cancelling the
+     * returned future with interruption stops the search.
+     *
+     * @return the running search, or null if every stream thread is busy
+     */
+    public Future<?> stream(ChessGame position, Engine.Limits limits, Consumer<Engine.Result> onIteration) {
+        try {
+            return streamers.submit(() -> {
+                analysisEngines.get().search(position, limits, onIteration);
+            });
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+        streamers.shutdownNow();
+        seats.clear();
+    }
+
+    //helpers
+
+    private static ThreadFactory lowPriority(String prefix) {
+        var ids = new AtomicInteger();
+        return r -> {
+            var t = new Thread(r, prefix + ids.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        };
+    }
+
+    //interrupting the search stops it even if it hasn't started yet, unlike Engine.stop()
+    private static void shut(Seat seat) {
+        synchronized (seat) {
+            seat.closed = true;
+            stopPonder(seat);
+            if (seat.search != null) {
+                seat.search.cancel(true);
+            }
+            if (seat.thinking != null) {
+                seat.thinking.cancel(false);
+            }
+        }
+    }
+
+    //caller holds the seat lock
+    private static void stopPonder(Seat seat) {
+        if (seat.ponder != null) {
+            seat.ponder.cancel(true);
+            seat.ponder = null;
+        }
+    }
+
+    private void preemptPonder() {
+        for (var seat : seats.values()) {
+            synchronized (seat) {
+                if (seat.ponder != null && !seat.ponder.isDone()) {
+                    stopPonder(seat);
+                    return;
+                }
+            }
+        }
+    }
+}
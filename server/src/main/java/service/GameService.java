@@ -3,21 +3,31 @@ package service;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Objects;
+import java.util.UUID;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 
 import chess.ChessGame;
 import chess.ChessMove;
 import chess.ChessPosition;
 import chess.InvalidMoveException;
+import dataaccess.AsyncDataAccess;
 import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
 import model.AuthData;
 import model.GameData;
+import model.UserData;
 
 import javax.xml.crypto.Data;
 
 
 public class GameService {
+    /** reserved username held by computer opponent seats */
+    public static final String BOT_USERNAME = "[computer]";
+
+    //compare-and-set retries before a write gives up with 409
+    static final int MAX_ATTEMPTS = 5;
+
     private final DataAccess db;
 
     public GameService(DataAccess db) {
@@ -50,235 +60,371 @@ public class GameService {
     //put game, join as white/black
 
     public void join(String authToken, ChessGame.TeamColor color, Integer gameID) throws ServiceException, DataAccessException {
-        var username = requireAuth(authToken);
-        if (color == null || gameID == null) {
-            throw new ServiceException(400, "Error: bad request");
-        }
-
-        var game = db.games().find(gameID);
+        optimistically(() -> {
+            var username = requireAuth(authToken);
+            if (color == null || gameID == null) {
+                throw new ServiceException(400, "Error: bad request");
+            }
 
-        if (game == null) {
-            throw new ServiceException(400, "Error: bad request");
-        }
+            var game = db.games().find(gameID);
 
-        switch (color) {
-            case WHITE -> {
-                if (game.whiteUsername() != null & !Objects.equals(game.whiteUsername(), username)) {
-                    throw new ServiceException(403, "Error: already taken");
-                }
-                var updated = new GameData(game.gameID(), username, game.blackUsername(), game.gameName(), game.game());
-                try {db.games().update(updated);}
-                catch (DataAccessException dae) {
-                    throw new ServiceException(500, "Error: " + dae.getMessage());
-                }
+            if (game == null) {
+                throw new ServiceException(400, "Error: bad request");
             }
-            case BLACK -> {
-                if (game.blackUsername() != null && !Objects.equals(game.blackUsername(), username)) {
-                    throw new ServiceException(403, "Error: already taken");
+
+            switch (color) {
+                case WHITE -> {
+                    if (game.whiteUsername() != null & !Objects.equals(game.whiteUsername(), username)) {
+                        throw new ServiceException(403, "Error: already taken");
+                    }
+                    var updated = new GameData(game.gameID(), username, game.blackUsername(), game.gameName(), game.game());
+                    save(game, updated);
                 }
-                var updated = new GameData(game.gameID(), game.whiteUsername(), username, game.gameName(), game.game());
-                try {db.games().update(updated);}
-                catch (DataAccessException dae) {
-                    throw new ServiceException(500, "Error: " + dae.getMessage());
+                case BLACK -> {
+                    if (game.blackUsername() != null && !Objects.equals(game.blackUsername(), username)) {
+                        throw new ServiceException(403, "Error: already taken");
+                    }
+                    var updated = new GameData(game.gameID(), game.whiteUsername(), username, game.gameName(), game.game());
+                    save(game, updated);
                 }
             }
-        }
+            return null;
+        });
     }
 
     //phase 6 websocket helps
     public ChessGame loadGameState(String authToken, int gameID)
             throws ServiceException, DataAccessException {
-
         requireAuth(authToken);
-        var gameData = db.games().find(gameID);
-        if (gameData == null) {
-            throw new ServiceException(400, "Error: bad request");
-        }
+        return loadGame(gameID);
+    }
 
-        ChessGame game = gameData.game();
-        if (game == null) {
-            game = new ChessGame();
-            game.getBoard().resetBoard();
+    /**
+     * Same as {@link #loadGameState} for a caller already authenticated.
+     */
+    public ChessGame loadGame(int gameID) throws ServiceException, DataAccessException {
+        return optimistically(() -> {
+            var gameData = db.games().find(gameID);
+            if (gameData == null) {
+                throw new ServiceException(400, "Error: bad request");
+            }
 
-            var updated = new GameData(
-                    gameData.gameID(),
-                    gameData.whiteUsername(),
-                    gameData.blackUsername(),
-                    gameData.gameName(),
-                    game
-            );
-            db.games().update(updated);
-        }
-        return game;
+            ChessGame game = gameData.game();
+            if (game == null) {
+                game = new ChessGame();
+                game.getBoard().resetBoard();
+
+                var updated = new GameData(
+                        gameData.gameID(),
+                        gameData.whiteUsername(),
+                        gameData.blackUsername(),
+                        gameData.gameName(),
+                        game
+                );
+                save(gameData, updated);
+            }
+            return game;
+        });
     }
 
-    public record MoveResult(ChessGame game, String moveNotif, String extraNotif){}
+    public record MoveResult(ChessGame game, String moveNotif, String extraNotif){
+        /**
+         * @return true if the move ended the game by checkmate or stalemate
+         */
+        public boolean gameOver() {
+            return isOver(game);
+        }
+    }
 
     public MoveResult moveMove(String authToken, int gameID, ChessMove move)
             throws ServiceException, DataAccessException, InvalidMoveException {
 
         String username = requireAuth(authToken);
+        return applyMove(gameID, username, move);
+    }
 
+    public MoveResult moveAs(String username, int gameID, ChessMove move)
+            throws ServiceException, DataAccessException, InvalidMoveException {
+        return applyMove(gameID, username, move);
+    }
+
+    /**
+     * @return the username the token belongs to
+     */
+    public String authenticate(String authToken) throws ServiceException, DataAccessException {
+        return requireAuth(authToken);
+    }
+
+    /**
+     * @return the user's seat in the game, or null for an observer
+     */
+    public ChessGame.TeamColor seatOf(String username, int gameID)
+            throws ServiceException, DataAccessException {
         var gameData = db.games().find(gameID);
-        if(gameData == null) {
+        if (gameData == null) {
             throw new ServiceException(400, "Error: bad request");
         }
-
-        ChessGame game = gameData.game();
-        if (game == null) {
-            game = new ChessGame();
-            game.getBoard().resetBoard();
+        if (username.equals(gameData.whiteUsername())) {
+            return ChessGame.TeamColor.WHITE;
         }
-
-        if (gameData.whiteUsername() == null || gameData.blackUsername() == null ||
-                game.isInCheckmate(ChessGame.TeamColor.WHITE) ||
-                game.isInCheckmate(ChessGame.TeamColor.BLACK) ||
-                game.isInStalemate(ChessGame.TeamColor.WHITE) ||
-                game.isInStalemate(ChessGame.TeamColor.BLACK)) {
-            throw new ServiceException(400, "Error: game over");
+        if (username.equals(gameData.blackUsername())) {
+            return ChessGame.TeamColor.BLACK;
         }
+        return null;
+    }
 
-        ChessGame.TeamColor playerColor;
-        if (username.equals(gameData.whiteUsername())) {
-            playerColor = ChessGame.TeamColor.WHITE;
-        } else if (username.equals(gameData.blackUsername())) {
-            playerColor = ChessGame.TeamColor.BLACK;
-        } else {
-            throw new ServiceException(400, "Error: not a player in the game");
-        }
+    public record Joined(String username, ChessGame game, ChessGame.TeamColor color) {}
+
+    /**
+     * Everything a websocket CONNECT needs: who the token belongs to, the game,
+     * and the user's seat. The token and game lookups run at the same time.
+     */
+    public Joined connect(String authToken, int gameID) throws ServiceException, DataAccessException {
+        var async = db.async();
+        var pendingAuth = async.auths().find(authToken);
+        var pendingGame = async.games().find(gameID);
 
-        if (game.getTeamTurn() != playerColor) {
-            throw new ServiceException(400, "Error: wrong turn");
+        var auth = AsyncDataAccess.await(pendingAuth);
+        if (auth == null) {
+            throw new ServiceException(401, "Error: unauthorized");
+        }
+        var gameData = AsyncDataAccess.await(pendingGame);
+        if (gameData == null) {
+            throw new ServiceException(400, "Error: bad request");
         }
 
-        try {
-            game.makeMove(move);
-        } catch (InvalidMoveException e) {
-            throw new ServiceException(400, "Error: invalid move");
+        String username = auth.username();
+        ChessGame game = (gameData.game() != null) ? gameData.game() : loadGame(gameID);
+        ChessGame.TeamColor color = null;
+        if (username.equals(gameData.whiteUsername())) {
+            color = ChessGame.TeamColor.WHITE;
+        } else if (username.equals(gameData.blackUsername())) {
+            color = ChessGame.TeamColor.BLACK;
         }
+        return new Joined(username, game, color);
+    }
 
-        var updated = new GameData(
-                gameData.gameID(),
-                gameData.whiteUsername(),
-                gameData.blackUsername(),
-                gameData.gameName(),
-                game
-        );
+    //computer opponent seats
 
-        db.games().update(updated);
+    /**
+     * Seats the computer opponent in an open seat of the game.
+     */
+    public void joinBot(String authToken, ChessGame.TeamColor color, Integer gameID)
+            throws ServiceException, DataAccessException {
+        optimistically(() -> {
+            requireAuth(authToken);
+            if (color == null || gameID == null) {
+                throw new ServiceException(400, "Error: bad request");
+            }
+            var game = db.games().find(gameID);
+            if (game == null) {
+                throw new ServiceException(400, "Error: bad request");
+            }
+            String current = (color == ChessGame.TeamColor.WHITE) ? game.whiteUsername() : game.blackUsername();
+            if (current != null && !BOT_USERNAME.equals(current)) {
+                throw new ServiceException(403, "Error: already taken");
+            }
 
-        String moveText = buildMoveDescription(username, move);
+            //games reference users, so the bot needs a row of its own
+            try {
+                if (db.users().find(BOT_USERNAME) == null) {
+                    db.users().insert(new UserData(BOT_USERNAME, UUID.randomUUID().toString(), null));
+                }
+            } catch (DataAccessException dae) {
+                if (db.users().find(BOT_USERNAME) == null) {
+                    throw new ServiceException(500, "Error: " + dae.getMessage());
+                }
+            }
 
-        ChessGame.TeamColor opponent = (playerColor == ChessGame.TeamColor.WHITE)
-                ? ChessGame.TeamColor.BLACK
-                : ChessGame.TeamColor.WHITE;
+            var updated = (color == ChessGame.TeamColor.WHITE)
+                    ? new GameData(game.gameID(), BOT_USERNAME, game.blackUsername(), game.gameName(), game.game())
+                    : new GameData(game.gameID(), game.whiteUsername(), BOT_USERNAME, game.gameName(), game.game());
+            save(game, updated);
+            return null;
+        });
+    }
 
-        String opponentName = (opponent == ChessGame.TeamColor.WHITE)
+    /**
+     * @return the position if the computer opponent is to move in a game still in
+     * progress, otherwise null
+     */
+    public ChessGame botToMove(int gameID) throws DataAccessException {
+        var gameData = db.games().find(gameID);
+        if (gameData == null || gameData.whiteUsername() == null || gameData.blackUsername() == null) {
+            return null;
+        }
+        ChessGame game = gameData.game();
+        if (game == null) {
+            game = new ChessGame();
+            game.getBoard().resetBoard();
+        }
+        String toMove = (game.getTeamTurn() == ChessGame.TeamColor.WHITE)
                 ? gameData.whiteUsername()
                 : gameData.blackUsername();
-
-        String extra = null;
-
-        if(game.isInCheckmate(opponent)) {
-            extra = opponentName + " is in checkmate";
-        } else if (game.isInStalemate(opponent)) {
-            extra = opponentName + " is in stalemate";
-        } else if (game.isInCheck(opponent)) {
-            extra = opponentName + " is in check";
+        if (!BOT_USERNAME.equals(toMove) || isOver(game)) {
+            return null;
         }
-
-        return new MoveResult(game, moveText, extra);
+        return game;
     }
 
-    public void leaveGame(String authToken, int gameID)
-        throws ServiceException, DataAccessException {
-        String username = requireAuth(authToken);
+    /**
+     * @return true if the game has a computer opponent seated
+     */
+    public boolean hasBot(int gameID) throws DataAccessException {
         var gameData = db.games().find(gameID);
+        return gameData != null
+                && (BOT_USERNAME.equals(gameData.whiteUsername()) || BOT_USERNAME.equals(gameData.blackUsername()));
+    }
 
-        if (gameData == null) {
-            throw new ServiceException(400, "error bad request");
-        }
+    public MoveResult moveBot(int gameID, ChessMove move)
+            throws ServiceException, DataAccessException, InvalidMoveException {
+        return applyMove(gameID, BOT_USERNAME, move);
+    }
 
-        String white = gameData.whiteUsername();
-        String black = gameData.blackUsername();
+    //helper, shared by human and bot moves
+    private MoveResult applyMove(int gameID, String username, ChessMove move)
+            throws ServiceException, DataAccessException, InvalidMoveException {
+        return optimistically(() -> {
+            var gameData = db.games().find(gameID);
+            if(gameData == null) {
+                throw new ServiceException(400, "Error: bad request");
+            }
 
-        if (username.equals(white)) {
-            white = null;
-        } else if (username.equals(black)) {
-            black = null;
-        }
+            //work on a copy; the stored game must not change unless our write wins
+            ChessGame game = (gameData.game() == null) ? null : new ChessGame(gameData.game());
+            if (game == null) {
+                game = new ChessGame();
+                game.getBoard().resetBoard();
+            }
 
-        var updated = new GameData(
-                gameData.gameID(),
-                white,
-                black,
-                gameData.gameName(),
-                gameData.game()
-        );
-        db.games().update(updated);
-    }
+            if (gameData.whiteUsername() == null || gameData.blackUsername() == null || isOver(game)) {
+                throw new ServiceException(400, "Error: game over");
+            }
 
-    public void resignGame(String authToken, int gameID)
-        throws ServiceException, DataAccessException {
+            ChessGame.TeamColor playerColor;
+            if (username.equals(gameData.whiteUsername())) {
+                playerColor = ChessGame.TeamColor.WHITE;
+            } else if (username.equals(gameData.blackUsername())) {
+                playerColor = ChessGame.TeamColor.BLACK;
+            } else {
+                throw new ServiceException(400, "Error: not a player in the game");
+            }
 
-        String username = requireAuth(authToken);
-        var gameData = db.games().find(gameID);
+            if (game.getTeamTurn() != playerColor) {
+                throw new ServiceException(400, "Error: wrong turn");
+            }
 
-        if(gameData == null) {
-            throw new ServiceException(400, "error bad reqeust");
-        }
+            try {
+                game.makeMove(move);
+            } catch (InvalidMoveException e) {
+                throw new ServiceException(400, "Error: invalid move");
+            }
+
+            var updated = new GameData(
+                    gameData.gameID(),
+                    gameData.whiteUsername(),
+                    gameData.blackUsername(),
+                    gameData.gameName(),
+                    game
+            );
 
-        boolean isWhite = username.equals(gameData.whiteUsername());
-        boolean isBlack = username.equals(gameData.blackUsername());
+            save(gameData, updated);
+            recordMove(gameID, move);
 
-        if (!isWhite && !isBlack) {
-            throw new ServiceException(400, "observers cannot resign");
-        }
+            String moveText = buildMoveDescription(username, move);
 
-        var updated = new GameData(
-                gameData.gameID(),
-                null,
-                null,
-                gameData.gameName(),
-                gameData.game()
-        );
-        db.games().update(updated);
-    }
+            ChessGame.TeamColor opponent = (playerColor == ChessGame.TeamColor.WHITE)
+                    ? ChessGame.TeamColor.BLACK
+                    : ChessGame.TeamColor.WHITE;
 
-    //notification helps
+            String opponentName = (opponent == ChessGame.TeamColor.WHITE)
+                    ? gameData.whiteUsername()
+                    : gameData.blackUsername();
 
-    public String buildConnectMessage(String authToken, int gameID)
-        throws ServiceException, DataAccessException {
+            String extra = null;
 
-        String username = requireAuth(authToken);
-        var gameData = db.games().find(gameID);
-        if (gameData == null) {
-            throw new ServiceException(400, "bad request");
-        }
+            if(game.isInCheckmate(opponent)) {
+                extra = opponentName + " is in checkmate";
+            } else if (game.isInStalemate(opponent)) {
+                extra = opponentName + " is in stalemate";
+            } else if (game.isInCheck(opponent)) {
+                extra = opponentName + " is in check";
+            }
 
-        if (username.equals(gameData.whiteUsername())) {
-            return username + " connected as WHITE";
-        } else if (username.equals(gameData.blackUsername())) {
-            return username + " connected as BLACK";
-        } else {
-            return username + "connected as an observer";
-        }
+            return new MoveResult(game, moveText, extra);
+        });
     }
 
-    public String buildLeaveMessage(String authToken, int gameID)
+    public void leaveGame(String authToken, int gameID)
         throws ServiceException, DataAccessException {
+        leaveAs(requireAuth(authToken), gameID);
+    }
 
-        String username = requireAuth(authToken);
+    public void leaveAs(String username, int gameID)
+        throws ServiceException, DataAccessException {
+        optimistically(() -> {
+            var gameData = db.games().find(gameID);
+
+            if (gameData == null) {
+                throw new ServiceException(400, "error bad request");
+            }
+
+            String white = gameData.whiteUsername();
+            String black = gameData.blackUsername();
 
-        return username + " left the game";
+            if (username.equals(white)) {
+                white = null;
+            } else if (username.equals(black)) {
+                black = null;
+            }
+
+            var updated = new GameData(
+                    gameData.gameID(),
+                    white,
+                    black,
+                    gameData.gameName(),
+                    gameData.game()
+            );
+            save(gameData, updated);
+            return null;
+        });
     }
 
-    public String buildResignMessage(String authToken, int gameID)
+    public void resignGame(String authToken, int gameID)
         throws ServiceException, DataAccessException {
-        String username = requireAuth(authToken);
-        return username + " resigned";
+        resignAs(requireAuth(authToken), gameID);
     }
 
+    public void resignAs(String username, int gameID)
+        throws ServiceException, DataAccessException {
+        optimistically(() -> {
+            var gameData = db.games().find(gameID);
+
+            if(gameData == null) {
+                throw new ServiceException(400, "error bad reqeust");
+            }
+
+            boolean isWhite = username.equals(gameData.whiteUsername());
+            boolean isBlack = username.equals(gameData.blackUsername());
+
+            if (!isWhite && !isBlack) {
+                throw new ServiceException(400, "observers cannot resign");
+            }
+
+            var updated = new GameData(
+                    gameData.gameID(),
+                    null,
+                    null,
+                    gameData.gameName(),
+                    gameData.game()
+            );
+            save(gameData, updated);
+            return null;
+        });
+    }
+
+    //notification helps
+
     public String buildMoveDescription(String username, ChessMove move)
         throws ServiceException, DataAccessException {
 
@@ -291,6 +437,57 @@ public class GameService {
                 to.getRow(), to.getColumn());
     }
 
+    //one try at a read-modify-write of a game; throws VersionConflict to be retried
+    private interface Attempt<T> {
+        T run() throws ServiceException, DataAccessException, VersionConflict;
+    }
+
+    private static final class VersionConflict extends Exception {
+        VersionConflict() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Runs the attempt until its write lands on the version it read. Conflicts are
+     * retried after a short random pause, which grows with each try, so racing
+     * writers spread out instead of colliding again.
+     */
+    private <T> T optimistically(Attempt<T> attempt) throws ServiceException, DataAccessException {
+        for (int tries = 1; ; tries++) {
+            try {
+                return attempt.run();
+            } catch (VersionConflict conflict) {
+                if (tries == MAX_ATTEMPTS) {
+                    throw new ServiceException(409, "Error: game changed, try again");
+                }
+            }
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(1, 2L << tries));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServiceException(500, "Error: interrupted");
+            }
+        }
+    }
+
+    //compare-and-set write of a game read earlier in the same attempt
+    private void save(GameData read, GameData updated) throws DataAccessException, VersionConflict {
+        if (!db.games().update(read.version(), updated)) {
+            throw new VersionConflict();
+        }
+    }
+
+    //the move list is only history for batch jobs, so losing one entry mustn't fail a move already saved;
+    //behind the game cache this only queues the move for the flush that writes the board
+    private void recordMove(int gameID, ChessMove move) {
+        try {
+            db.games().addMove(gameID, move);
+        } catch (DataAccessException e) {
+            System.out.printf("Move history not recorded for game %d: %s%n", gameID, e.getMessage());
+        }
+    }
+
     //helper method
     private String requireAuth(String token)
             throws ServiceException, DataAccessException {
@@ -301,6 +498,13 @@ public class GameService {
         return a.username();
     }
 
+    private static boolean isOver(ChessGame game) {
+        return game.isInCheckmate(ChessGame.TeamColor.WHITE) ||
+                game.isInCheckmate(ChessGame.TeamColor.BLACK) ||
+                game.isInStalemate(ChessGame.TeamColor.WHITE) ||
+                game.isInStalemate(ChessGame.TeamColor.BLACK);
+    }
+
     private static boolean isBlank(String s) {
         return s == null || s.isBlank();
     }
@@ -0,0 +1,124 @@
+package service;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Hashes and checks passwords on a few dedicated threads.
+ * <p>
+ * bcrypt is deliberately slow, so a burst of logins run on request threads
+ * could hold every one of them and stall game traffic. Here at most
+ * {@code threads} hashes run at once and at most {@code maxQueued} wait. Anything
+ * beyond that is refused straight away with a 503 rather than queueing up.
+ */
+public class PasswordPool {
+
+    public record Stats(long completed, long rejected, int queued,
+                        double avgWaitMillis, double avgRunMillis, double maxRunMillis) {}
+
+    private final ThreadPoolExecutor workers;
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+    private final LongAccumulator maxRunNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param threads   hashes that may run at once
+     * @param maxQueued hashes allowed to wait before new ones are refused
+     */
+    public PasswordPool(int threads, int maxQueued) {
+        var ids = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueued), r -> {
+                    var t = new Thread(r, "bcrypt-" + ids.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * A quarter of the cores (at least one), so logins can't crowd out games.
+     */
+    public static PasswordPool forAvailableCores() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+        return new PasswordPool(threads, threads * 32);
+    }
+
+    public String hash(String password) throws ServiceException {
+        return run(() -> BCrypt.hashpw(password, BCrypt.gensalt()));
+    }
+
+    public boolean check(String password, String hash) throws ServiceException {
+        return run(() -> {
+            try {
+                return BCrypt.checkpw(password, hash);
+            } catch (IllegalArgumentException e) {
+                //not a bcrypt hash at all
+                return false;
+            }
+        });
+    }
+
+    public Stats stats() {
+        long n = completed.sum();
+        return new Stats(n, rejected.sum(), workers.getQueue().size(),
+                n == 0 ? 0 : waitNanos.sum() / 1e6 / n,
+                n == 0 ? 0 : runNanos.sum() / 1e6 / n,
+                maxRunNanos.get() / 1e6);
+    }
+
+    public void shutdown() {
+        //callers still waiting on queued work get a 503 instead of hanging
+        for (Runnable queued : workers.shutdownNow()) {
+            if (queued instanceof Future<?> f) {
+                f.cancel(false);
+            }
+        }
+    }
+
+    //helper, runs the work on a worker and waits for it; package-private for tests
+    <T> T run(Supplier<T> work) throws ServiceException {
+        long queuedAt = System.nanoTime();
+        Future<T> result;
+        try {
+            result = workers.submit(() -> {
+                long start = System.nanoTime();
+                waitNanos.add(start - queuedAt);
+                try {
+                    return work.get();
+                } finally {
+                    long took = System.nanoTime() - start;
+                    runNanos.add(took);
+                    maxRunNanos.accumulate(took);
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServiceException(503, "Error: too many logins, try again shortly");
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceException(503, "Error: interrupted");
+        } catch (CancellationException e) {
+            throw new ServiceException(503, "Error: shutting down");
+        } catch (ExecutionException e) {
+            throw new ServiceException(500, "Error: " + e.getCause().getMessage());
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package service;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.InvalidMoveException;
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import dataaccess.SqlDataAccessDAO;
+import engine.Fen;
+import engine.Notation;
+import engine.TacticFinder;
+import engine.Zobrist;
+import model.GameData;
+import model.Puzzle;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Nightly batch job that turns stored games into tactic puzzles.
+ * <p>
+ * Games are read from the games table in id order, a batch at a time, and
+ * replayed from their recorded move lists with {@link ChessGame}. Every position becomes a task on
+ * a work-stealing pool, so a long game spreads across idle workers instead of
+ * holding up its batch. Positions with a single winning move (see
+ * {@link TacticFinder}) are written to the puzzles table. After each batch
+ * the last game ID is saved as the job's checkpoint, so a restarted job picks up
+ * where it stopped.
+ */
+public class PuzzleMiner {
+
+    public record Stats(long games, long positions, long puzzles, long nodes, long elapsedNanos) {
+        public double gamesPerSecond() {
+            return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos;
+        }
+
+        public double positionsPerSecond() {
+            return elapsedNanos == 0 ? 0 : positions * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d games (%.1f/s), %d positions (%.1f/s), %d puzzles, %d nodes",
+                    games, gamesPerSecond(), positions, positionsPerSecond(), puzzles, nodes);
+        }
+    }
+
+    //openings are rarely tactical and repeat across most games
+    private static final int SKIP_PLIES = 8;
+    private static final int MAX_SEEN = 1_000_000;
+    private static final long REPORT_NANOS = 10_000_000_000L;
+
+    private final DataAccess db;
+    private final String job;
+    private final int batchSize;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<TacticFinder> finders;
+
+    private final LongAdder games = new LongAdder();
+    private final LongAdder positions = new LongAdder();
+    private final LongAdder puzzles = new LongAdder();
+    private final Map<Thread, TacticFinder> allFinders = new ConcurrentHashMap<>();
+    private final Set<Long> seen = ConcurrentHashMap.newKeySet();
+    private volatile boolean stopRequested;
+
+    public PuzzleMiner(DataAccess db, String job, int depth, int threads, int batchSize) {
+        this.db = db;
+        this.job = job;
+        this.batchSize = batchSize;
+        this.pool = new ForkJoinPool(threads);
+        this.finders = ThreadLocal.withInitial(() -> {
+            var finder = new TacticFinder(depth);
+            allFinders.put(Thread.currentThread(), finder);
+            return finder;
+        });
+    }
+
+    /**
+     * Mines from the job's checkpoint to the end of the games table, or until
+     * {@link #stop()} is called.
+     */
+    public Stats run() throws DataAccessException {
+        long start = System.nanoTime();
+        long lastReport = start;
+        int after = db.puzzles().checkpoint(job);
+        try {
+            while (!stopRequested) {
+                List<GameData> batch = db.games().listAfter(after, batchSize);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                //read here, not on the pool, so workers never block on the database
+                Map<Integer, List<ChessMove>> moves = new HashMap<>();
+                for (GameData game : batch) {
+                    moves.put(game.gameID(), db.games().moves(game.gameID()));
+                }
+                Queue<Puzzle> found = new ConcurrentLinkedQueue<>();
+                pool.invoke(new MineBatch(batch, moves, found));
+                for (Puzzle puzzle : found) {
+                    if (db.puzzles().insert(puzzle)) {
+                        puzzles.increment();
+                    }
+                }
+                after = batch.get(batch.size() - 1).gameID();
+                db.puzzles().saveCheckpoint(job, after);
+
+                long now = System.nanoTime();
+                if (now - lastReport >= REPORT_NANOS) {
+                    lastReport = now;
+                    System.out.printf("[%s] through game %d: %s%n", job, after, stats(now - start));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return stats(System.nanoTime() - start);
+    }
+
+    /**
+     * Finishes the current batch, saves the checkpoint and returns.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    private Stats stats(long elapsed) {
+        long nodes = 0;
+        for (var finder : allFinders.values()) {
+            nodes += finder.nodes();
+        }
+        return new Stats(games.sum(), positions.sum(), puzzles.sum(), nodes, elapsed);
+    }
+
+    private final class MineBatch extends RecursiveAction {
+        private final List<GameData> batch;
+        private final Map<Integer, List<ChessMove>> moves;
+        private final Queue<Puzzle> found;
+
+        MineBatch(List<GameData> batch, Map<Integer, List<ChessMove>> moves, Queue<Puzzle> found) {
+            this.batch = batch;
+            this.moves = moves;
+            this.found = found;
+        }
+
+        @Override
+        protected void compute() {
+            List<MinePosition> tasks = new ArrayList<>();
+            for (GameData game : batch) {
+                games.increment();
+                replay(game, tasks);
+            }
+            invokeAll(tasks);
+        }
+
+        //one task per position worth looking at
+        private void replay(GameData data, List<MinePosition> tasks) {
+            ChessGame stored = data.game();
+            if (stored == null) {
+                return;
+            }
+            List<ChessMove> history = moves.getOrDefault(data.gameID(), List.of());
+            var game = new ChessGame();
+            List<ChessGame> line = new ArrayList<>();
+            try {
+                for (ChessMove move : history) {
+                    line.add(new ChessGame(game));
+                    game.makeMove(move);
+                }
+            } catch (InvalidMoveException e) {
+                line.clear();
+            }
+            if (!game.equals(stored)) {
+                //no usable history (e.g. set up from a custom board); the final position is all we have
+                line.clear();
+            }
+            line.add(new ChessGame(stored));
+
+            int first = (line.size() > 1) ? SKIP_PLIES : 0;
+            for (int ply = first; ply < line.size(); ply++) {
+                ChessGame position = line.get(ply);
+                if (seen.size() > MAX_SEEN) {
+                    seen.clear();
+                }
+                if (seen.add(Zobrist.key(position))) {
+                    tasks.add(new MinePosition(data.gameID(), (line.size() > 1) ? ply : history.size(), position, found));
+                }
+            }
+        }
+    }
+
+    private final class MinePosition extends RecursiveAction {
+        private final int gameID;
+        private final int ply;
+        private final ChessGame position;
+        private final Queue<Puzzle> found;
+
+        MinePosition(int gameID, int ply, ChessGame position, Queue<Puzzle> found) {
+            this.gameID = gameID;
+            this.ply = ply;
+            this.position = position;
+            this.found = found;
+        }
+
+        @Override
+        protected void compute() {
+            positions.increment();
+            var tactic = finders.get().find(position);
+            if (tactic != null) {
+                found.add(new Puzzle(gameID, ply, Fen.format(position),
+                        Notation.of(tactic.solution()), tactic.score(), tactic.mateIn()));
+            }
+        }
+    }
+
+    /**
+     * Usage: {@code PuzzleMiner [job name] [depth] [threads] [batch size]}.
+     */
+    public static void main(String[] args) throws Exception {
+        String job = (args.length > 0) ? args[0] : "nightly";
+        int depth = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int batch = (args.length > 3) ? Integer.parseInt(args[3]) : 256;
+
+        var miner = new PuzzleMiner(new SqlDataAccessDAO(), job, depth, threads, batch);
+        //on Ctrl-C finish the batch in hand so the checkpoint stays accurate
+        var main = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            miner.stop();
+            try {
+                main.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        System.out.println(miner.run());
+    }
+}
@@ -6,15 +6,31 @@ import model.AuthData;
 import model.UserData;
 
 import javax.xml.crypto.Data;
+import java.util.List;
 import java.util.ServiceConfigurationError;
-import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 
 public class UserService {
     private final DataAccess db;
+    private final PasswordPool passwords;
+    private final List<Consumer<String>> logoutListeners = new CopyOnWriteArrayList<>();
 
     public UserService(DataAccess db) {
+        this(db, PasswordPool.forAvailableCores());
+    }
+
+    public UserService(DataAccess db, PasswordPool passwords) {
         this.db = db;
+        this.passwords = passwords;
+    }
+
+    /**
+     * Calls the listener with each token after it is logged out.
+     */
+    public void onLogout(Consumer<String> listener) {
+        logoutListeners.add(listener);
     }
 
     public AuthData register(UserData req) throws ServiceException {
@@ -22,18 +38,18 @@ public class UserService {
             throw new ServiceException(400, "Error: bad request");
         }
 
+        //hash on the password pool, outside the transaction so no connection waits on bcrypt
+        var hashed = new UserData(req.username(), passwords.hash(req.password()), req.email());
         try {
-            if (db.users().find(req.username()) != null) {
-                throw new ServiceException(403, "Error: already taken");
-            }
-
-            db.users().insert(req);
+            return db.inTransaction(tx -> {
+                if (GameService.BOT_USERNAME.equals(req.username()) || tx.users().find(req.username()) != null) {
+                    throw new ServiceException(403, "Error: already taken");
+                }
 
-            var token = UUID.randomUUID().toString();
-            var auth = new AuthData(token, req.username());
-            db.auths().insert(auth);
-            return auth;
+                tx.users().insert(hashed);
 
+                return tx.auths().issue(req.username());
+            });
         } catch (ServiceException se) {
             throw se;
         } catch (DataAccessException dae) {
@@ -50,14 +66,12 @@ public class UserService {
             if (dbUser == null) {
                 throw new ServiceException(401, "Error: unauthorized");
             }
-            boolean ok = org.mindrot.jbcrypt.BCrypt.checkpw(req.password(), dbUser.password());
+            boolean ok = passwords.check(req.password(), dbUser.password());
             if (!ok) {
                 throw new ServiceException(401, "Error: wrong password");
             }
 
-            var auth = new AuthData(java.util.UUID.randomUUID().toString(), dbUser.username());
-            db.auths().insert(auth);
-            return auth;
+            return db.auths().issue(dbUser.username());
         } catch (DataAccessException e) {
             throw new ServiceException(500, "Error: " + e.getMessage());
         }
@@ -69,6 +83,9 @@ public class UserService {
             throw new ServiceException(401, "Error: unauthorized");
         }
         db.auths().delete(authToken);
+        for (var listener : logoutListeners) {
+            listener.accept(authToken);
+        }
     }
 
     private static boolean isBlank(String s) {
@@ -0,0 +1,102 @@
+package websocket;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs websocket work one game at a time.
+ * <p>
+ * Every game with pending work has a mailbox and exactly one thread (virtual
+ * by default) draining it in arrival order, so a game's commands never overlap
+ * and need no locks. Different games drain on different threads and run in parallel. A
+ * mailbox exists only while its drainer is running: the drainer removes it once
+ * it finds it empty, and the next command for that game starts a fresh one.
+ */
+public class GameSequencer {
+
+    private static final class Mailbox {
+        final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    }
+
+    private final Map<Integer, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final ExecutorService drainers;
+
+    public GameSequencer() {
+        this(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("game-", 0).factory()));
+    }
+
+    private GameSequencer(ExecutorService drainers) {
+        this.drainers = drainers;
+    }
+
+    /**
+     * Drains on a fixed pool of platform threads instead, so at most that many
+     * games make progress at once while the rest wait their turn.
+     */
+    public static GameSequencer onPlatformThreads(int threads) {
+        return new GameSequencer(Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().name("game-", 0).daemon(true).factory()));
+    }
+
+    /**
+     * Queues the task behind any earlier work for the same game.
+     *
+     * @return false if the sequencer has been shut down
+     */
+    public boolean submit(int gameID, Runnable task) {
+        var started = new boolean[1];
+        //creating and removing mailboxes both happen inside compute, so a task can't
+        //land in a mailbox whose drainer has already quit
+        var box = mailboxes.compute(gameID, (id, b) -> {
+            if (b == null) {
+                b = new Mailbox();
+                started[0] = true;
+            }
+            b.tasks.add(task);
+            return b;
+        });
+        if (!started[0]) {
+            return true;
+        }
+        try {
+            drainers.execute(() -> drain(gameID, box));
+            return true;
+        } catch (RejectedExecutionException e) {
+            mailboxes.remove(gameID, box);
+            return false;
+        }
+    }
+
+    /**
+     * @return number of games with work queued or running
+     */
+    public int activeGames() {
+        return mailboxes.size();
+    }
+
+    public void shutdown() {
+        drainers.shutdownNow();
+        mailboxes.clear();
+    }
+
+    private void drain(int gameID, Mailbox box) {
+        while (true) {
+            Runnable task;
+            while ((task = box.tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    System.out.printf("Game %d task failed: %s%n", gameID, e);
+                }
+            }
+            if (mailboxes.computeIfPresent(gameID, (id, b) -> b.tasks.isEmpty() ? null : b) == null) {
+                return;
+            }
+        }
+    }
+}
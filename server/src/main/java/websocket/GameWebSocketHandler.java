@@ -6,48 +6,202 @@ import chess.InvalidMoveException;
 import com.google.gson.Gson;
 import dataaccess.DataAccessException;
 import io.javalin.websocket.*;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import service.EnginePool;
 import service.GameService;
 import service.ServiceException;
 import websocket.commands.UserGameCommand;
 import websocket.messages.ServerMessage;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class GameWebSocketHandler {
 
     private final Gson gson = new Gson();
     private final GameService gameService;
+    private final EnginePool enginePool;
+    private final LiveEvaluations liveEvals;
+    //one writer per game: commands for a game run in order, on its own thread
+    private final GameSequencer sequencer;
+    private static final int PLATFORM_THREADS = 4 * Runtime.getRuntime().availableProcessors();
+
+    public static final String MAX_GAMES_PROPERTY = "chess.ws.maxGames";
+    //games one connection may follow at once, from -Dchess.ws.maxGames
+    private static final int MAX_GAMES = Integer.getInteger(MAX_GAMES_PROPERTY, 16);
+
+    //who a session is in one game, resolved once at CONNECT or SUBSCRIBE; color is null for observers,
+    //deltas if the client applies MOVE_APPLIED itself instead of taking a LOAD_GAME per move
+    private record Principal(String username, String authToken, int gameID, ChessGame.TeamColor color,
+                             boolean deltas) {}
+
+    //one open websocket; rooms hold these directly so a broadcast needs no lookups
+    private static final class Connection {
+        private static final Principal[] NONE = new Principal[0];
+
+        final String id;
+        final SessionOutbox outbox;
+        //connected with ?codec=binary
+        final boolean binary;
+        //the games followed, one principal each; copy-on-write since each game's
+        //sequencer changes its own entry while others read
+        private volatile Principal[] games = NONE;
+
+        Connection(String id, SessionOutbox outbox, boolean binary) {
+            this.id = id;
+            this.outbox = outbox;
+            this.binary = binary;
+        }
+
+        Principal in(int gameID) {
+            for (var p : games) {
+                if (p.gameID() == gameID) {
+                    return p;
+                }
+            }
+            return null;
+        }
+
+        Principal[] games() {
+            return games;
+        }
+
+        //adds the game, or replaces what was there for it
+        synchronized void put(Principal principal) throws ServiceException {
+            var old = games;
+            for (int i = 0; i < old.length; i++) {
+                if (old[i].gameID() == principal.gameID()) {
+                    var next = old.clone();
+                    next[i] = principal;
+                    games = next;
+                    return;
+                }
+            }
+            if (old.length >= MAX_GAMES) {
+                throw new ServiceException(400, "Error: already following " + MAX_GAMES + " games");
+            }
+            var next = Arrays.copyOf(old, old.length + 1);
+            next[old.length] = principal;
+            games = next;
+        }
+
+        //removes exactly this principal, so a stale one can't remove its replacement
+        synchronized boolean remove(Principal principal) {
+            var old = games;
+            for (int i = 0; i < old.length; i++) {
+                if (old[i] == principal) {
+                    var next = new Principal[old.length - 1];
+                    System.arraycopy(old, 0, next, 0, i);
+                    System.arraycopy(old, i + 1, next, i, old.length - i - 1);
+                    games = next;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        //players never conflate, so a seat in any followed game keeps every frame
+        boolean playing() {
+            for (var p : games) {
+                if (p.color() != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
 
-    private final Map<Integer, Set<String>> gameSessions = new ConcurrentHashMap<>();
+    //per-game state that lives as long as the room; only touched on the game's sequencer
+    private static final class GameRoom {
+        //moves broadcast, for MOVE_APPLIED sequence numbers
+        int moveSeq;
+        //the current board as a ready-to-send LOAD_GAME, encoded once and reused for every
+        //recipient and later connect until the next move
+        Outgoing snapshot;
+        int snapshotSeq = -1;
+    }
 
-    private final Map<String, Integer> sessionGame = new ConcurrentHashMap<>();
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+    private final RoomRegistry<Connection, GameRoom> rooms = new RoomRegistry<>(GameRoom::new);
 
-    private final Map<String, WsContext> activeSessions = new ConcurrentHashMap<>();
+    private final SessionOutbox.Limits outboxLimits;
+    //ends observers' conflation windows
+    private final ScheduledExecutorService conflateTimer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("ws-conflate").daemon(true).factory());
 
     public GameWebSocketHandler(GameService gameService) {
+        this(gameService, null);
+    }
+
+    public GameWebSocketHandler(GameService gameService, EnginePool enginePool) {
+        this(gameService, enginePool, true);
+    }
+
+    /**
+     * @param virtualThreads drain each game's commands on a virtual thread; otherwise
+     *                       on a fixed pool of platform threads
+     */
+    public GameWebSocketHandler(GameService gameService, EnginePool enginePool, boolean virtualThreads) {
+        this(gameService, enginePool, virtualThreads, SessionOutbox.Limits.fromSystemProperties());
+    }
+
+    /**
+     * @param outboxLimits how many messages may wait for each session, and what happens past that
+     */
+    public GameWebSocketHandler(GameService gameService, EnginePool enginePool, boolean virtualThreads,
+                                SessionOutbox.Limits outboxLimits) {
         this.gameService = gameService;
+        this.outboxLimits = outboxLimits;
+        this.sequencer = virtualThreads ? new GameSequencer() : GameSequencer.onPlatformThreads(PLATFORM_THREADS);
+        this.enginePool = enginePool;
+        this.liveEvals = (enginePool == null) ? null : new LiveEvaluations(enginePool, this::sendTo);
+    }
+
+    public void shutdown() {
+        sequencer.shutdown();
+        conflateTimer.shutdownNow();
+        if (liveEvals != null) {
+            liveEvals.shutdown();
+        }
     }
 
     public void onConnect(WsConnectContext ctx) {
-        String sid = ctx.sessionId();
-        activeSessions.put(sid,ctx);
+        boolean binary = BinaryCodec.NAME.equals(ctx.queryParam(BinaryCodec.QUERY_PARAM));
+        open(ctx.sessionId(), binary, transport(ctx));
         System.out.printf("Websocket connected: %s%n", ctx);
     }
 
     public void onClose(WsCloseContext ctx){
-        String sid = ctx.sessionId();
+        closed(ctx.sessionId());
+    }
 
-        Integer gameID = sessionGame.remove(sid);
-        if (gameID != null) {
-            var set = gameSessions.get(gameID);
-            if (set != null) {
-                set.remove(sid);
+    //the handler below Javalin: sessions are just IDs with a transport, which tests can supply
+
+    //games with at least one session in the room
+    int openRooms() {
+        return rooms.size();
+    }
+
+    void open(String sid, boolean binary, SessionOutbox.Transport transport) {
+        connections.put(sid, new Connection(sid, new SessionOutbox(transport, outboxLimits, conflateTimer), binary));
+    }
+
+    void closed(String sid) {
+        var conn = connections.remove(sid);
+        if (conn != null) {
+            //detach on each game's own thread, as revoke does; a CONNECT racing this one
+            //sees the connection gone and undoes its own join
+            for (var principal : conn.games()) {
+                sequencer.submit(principal.gameID(), () -> detach(principal.gameID(), conn));
             }
+            conn.outbox.close(null);
         }
-
-        activeSessions.remove(sid);
         System.out.printf("Websocket closed: %s%n", sid);
     }
 
@@ -59,127 +213,494 @@ public class GameWebSocketHandler {
     }
 
     public void onMessage(WsMessageContext ctx) {
+        UserGameCommand command;
+        try {
+            command = gson.fromJson(ctx.message(), UserGameCommand.class);
+        } catch (Exception ex) {
+            send(ctx.sessionId(), ServerMessage.error("Error: " + ex.getMessage()));
+            return;
+        }
+        accept(ctx.sessionId(), command);
+    }
+
+    public void onBinaryMessage(WsBinaryMessageContext ctx) {
+        UserGameCommand command;
+        try {
+            command = BinaryCodec.decodeCommand(ByteBuffer.wrap(ctx.data(), ctx.offset(), ctx.length()));
+        } catch (IllegalArgumentException ex) {
+            send(ctx.sessionId(), ServerMessage.error("Error: " + ex.getMessage()));
+            return;
+        }
+        accept(ctx.sessionId(), command);
+    }
+
+    void accept(String sid, UserGameCommand command) {
+        if (command == null || command.getCommandType() == null || command.getGameID() == null) {
+            send(sid, ServerMessage.error("Error: bad request"));
+            return;
+        }
+        if (!sequencer.submit(command.getGameID(), () -> dispatch(sid, command))) {
+            send(sid, ServerMessage.error("Error: server is shutting down"));
+        }
+    }
+
+    //runs on the game's sequencer thread
+    private void dispatch(String sid, UserGameCommand command) {
         try {
-            var command = gson.fromJson(ctx.message(),UserGameCommand.class);
             switch (command.getCommandType()) {
-                case CONNECT -> handleConnect(ctx, command);
-                case MAKE_MOVE -> handleMakeMove(ctx,command);
-                case LEAVE -> handleLeave(ctx,command);
-                case RESIGN -> handleResign(ctx,command);
+                case CONNECT -> handleConnect(sid, command, true);
+                case SUBSCRIBE -> handleConnect(sid, command, false);
+                case UNSUBSCRIBE -> handleUnsubscribe(sid, command);
+                case MAKE_MOVE -> handleMakeMove(sid, command);
+                case LEAVE -> handleLeave(sid, command);
+                case RESIGN -> handleResign(sid, command);
+                case WATCH_EVAL -> handleWatchEval(sid, command);
+                case UNWATCH_EVAL -> handleUnwatchEval(sid, command);
+                case RESYNC -> handleResync(sid, command);
             }
         } catch (ServiceException | DataAccessException ex) {
-            ctx.send(gson.toJson(ServerMessage.error(ex.getMessage())));
+            send(sid, ServerMessage.error(command.getGameID(), ex.getMessage()));
         } catch (Exception ex) {
-            ctx.send(gson.toJson(ServerMessage.error("Error: " + ex.getMessage())));
+            send(sid, ServerMessage.error(command.getGameID(), "Error: " + ex.getMessage()));
+        }
+    }
+
+    /**
+     * Ends every session bound to the token, e.g. after logout.
+     */
+    public void revoke(String authToken) {
+        for (var conn : connections.values()) {
+            for (var principal : conn.games()) {
+                if (principal.authToken().equals(authToken)) {
+                    //detach on the game's own thread so it can't interleave with the session's commands
+                    sequencer.submit(principal.gameID(), () -> revoke(conn, principal));
+                }
+            }
+        }
+    }
+
+    //runs on the principal's game sequencer; the last game to go closes the connection
+    private void revoke(Connection conn, Principal principal) {
+        if (!conn.remove(principal)) {
+            return;
         }
+        detach(principal.gameID(), conn);
+        var error = new Outgoing(ServerMessage.error(principal.gameID(), "Error: logged out"));
+        if (conn.games().length > 0) {
+            error.sendTo(conn);
+            return;
+        }
+        //close once the error has gone out, or failed to
+        error.sendTo(conn, new WriteCallback() {
+            @Override
+            public void writeSuccess() {
+                closeConnection(conn);
+            }
+
+            @Override
+            public void writeFailed(Throwable x) {
+                closeConnection(conn);
+            }
+        });
     }
 
     //helper handlers
-    private void handleConnect(WsContext ctx, UserGameCommand cmd)
+
+    //CONNECT moves the connection to this one game; SUBSCRIBE adds it to the games
+    //already followed, and only announces players, so watching many games stays quiet
+    private void handleConnect(String sid, UserGameCommand cmd, boolean exclusive)
         throws ServiceException, DataAccessException {
 
         int gameID = cmd.getGameID();
         String auth = cmd.getAuthToken();
-        String sid = ctx.sessionId();
+        var conn = connection(sid);
+
+        var joined = gameService.connect(auth, gameID);
+        String username = joined.username();
+        ChessGame game = joined.game();
+        var color = joined.color();
+
+        var principal = new Principal(username, auth, gameID, color, cmd.wantsMoveDeltas());
+        if (exclusive) {
+            //drop the other games first, so a connection at the limit can still move to this one
+            for (var other : conn.games()) {
+                if (other.gameID() != gameID && conn.remove(other)) {
+                    sequencer.submit(other.gameID(), () -> detach(other.gameID(), conn));
+                }
+            }
+        }
+        conn.put(principal);
+        //players get the front of the room
+        var room = rooms.join(gameID, conn, color != null);
+        if (connections.get(sid) != conn) {
+            //closed while connecting, after the close had already detached its games
+            conn.remove(principal);
+            detach(gameID, conn);
+            return;
+        }
+
+        snapshot(room, game).sendTo(conn);
+        conn.outbox.conflate(!conn.playing());
+
+        if (exclusive || color != null) {
+            String notif = (color == null)
+                    ? username + " connected as an observer"
+                    : username + " connected as " + color;
+            broadcastToOthers(gameID, conn, ServerMessage.notification(gameID, notif));
+        }
+
+        driveBot(gameID, game);
+    }
+
+    //stops following the game; unlike LEAVE a player keeps the seat
+    private void handleUnsubscribe(String sid, UserGameCommand cmd) throws ServiceException {
+        var principal = principal(sid, cmd);
+        int gameID = principal.gameID();
+        var conn = connection(sid);
+
+        if (!conn.remove(principal)) {
+            return;
+        }
+        detach(gameID, conn);
+        conn.outbox.conflate(!conn.playing());
+
+        if (principal.color() != null) {
+            broadcastToOthers(gameID, conn, ServerMessage.notification(gameID, principal.username() + " disconnected"));
+        }
+    }
 
-        ChessGame game = gameService.loadGameState(auth, gameID);
+    private Connection connection(String sid) throws ServiceException {
+        var conn = connections.get(sid);
+        if (conn == null) {
+            throw new ServiceException(400, "Error: connection closed");
+        }
+        return conn;
+    }
 
-        sessionGame.put(sid, gameID);
-        gameSessions.computeIfAbsent(gameID, id -> ConcurrentHashMap.newKeySet())
-                .add(sid);
+    //the identity bound at CONNECT or SUBSCRIBE, for a command on that game
+    private Principal principal(String sid, UserGameCommand cmd) throws ServiceException {
+        var principal = connection(sid).in(cmd.getGameID());
+        if (principal == null) {
+            throw new ServiceException(400, "Error: connect to the game first");
+        }
+        return principal;
+    }
 
-        ctx.send(gson.toJson(ServerMessage.loadGame(game)));
+    //leaving the last seat removes the room and everything cached with it
+    private void detach(int gameID, Connection conn) {
+        rooms.leave(gameID, conn);
+        if (liveEvals != null) {
+            liveEvals.unwatch(gameID, conn.id);
+        }
+    }
 
-        String notif = gameService.buildConnectMessage(auth, gameID);
-        broadcastToOthers(gameID, sid, ServerMessage.notification(notif));
+    //the cached LOAD_GAME if it is still current, else null
+    private static Outgoing currentSnapshot(RoomRegistry.Room<Connection, GameRoom> room) {
+        var state = room.state();
+        return (state.snapshot != null && state.snapshotSeq == state.moveSeq) ? state.snapshot : null;
+    }
+
+    //the LOAD_GAME for the game as it stands, caching it for the next caller
+    private Outgoing snapshot(RoomRegistry.Room<Connection, GameRoom> room, ChessGame game) {
+        var cached = currentSnapshot(room);
+        if (cached != null) {
+            return cached;
+        }
+        var state = room.state();
+        state.snapshot = new Outgoing(ServerMessage.loadGame(room.gameID(), game, state.moveSeq));
+        state.snapshotSeq = state.moveSeq;
+        return state.snapshot;
     }
 
-    private void handleMakeMove(WsContext ctx, UserGameCommand cmd)
+    private void handleMakeMove(String sid, UserGameCommand cmd)
             throws ServiceException, DataAccessException, InvalidMoveException {
-        int gameID = cmd.getGameID();
-        String auth = cmd.getAuthToken();
+        var principal = principal(sid, cmd);
+        int gameID = principal.gameID();
         ChessMove move = cmd.getMove();
-        String sid = ctx.sessionId();
+        var conn = connection(sid);
 
-        GameService.MoveResult result = gameService.moveMove(auth, gameID, move);
+        GameService.MoveResult result = gameService.moveAs(principal.username(), gameID, move);
 
-        ServerMessage loadMsg = ServerMessage.loadGame(result.game());
-        broadcastToAll(gameID, loadMsg);
+        broadcastMove(gameID, result.game(), move);
 
         String moveNotif = result.moveNotif();
         if (moveNotif != null) {
-            broadcastToOthers(gameID, sid, ServerMessage.notification(moveNotif));
+            broadcastToOthers(gameID, conn, ServerMessage.notification(gameID, moveNotif));
         }
 
         String extra = result.extraNotif();
         if (extra != null) {
-            broadcastToAll(gameID, ServerMessage.notification(extra));
+            broadcastToAll(gameID, ServerMessage.notification(gameID, extra));
+        }
+
+        if (liveEvals != null) {
+            liveEvals.positionChanged(gameID, result.game());
+        }
+        if (result.gameOver()) {
+            closeBotSeat(gameID);
+        }
+        driveBot(gameID, result.game());
+    }
+
+    //computer opponent: search on the engine pool, then broadcast like any other move
+    private void driveBot(int gameID, ChessGame current) throws ServiceException, DataAccessException {
+        if (enginePool == null) {
+            return;
+        }
+        ChessGame position = gameService.botToMove(gameID);
+        if (position == null) {
+            if (enginePool.isOpen(gameID)) {
+                enginePool.ponder(gameID, current);
+            }
+            return;
+        }
+        //seats only live in memory, so a game resumed after a restart needs a new one
+        if (!enginePool.isOpen(gameID)) {
+            enginePool.open(gameID, EnginePool.DEFAULT_MOVE_MILLIS);
         }
+        var search = enginePool.think(gameID, position);
+        if (search == null) {
+            return;
+        }
+        //the engine thread hands the move back to the game's sequencer like any other command
+        search.whenComplete((move, err) -> sequencer.submit(gameID, () -> {
+            if (search.isCancelled()) {
+                //the seat was closed while searching
+                return;
+            }
+            if (err != null || move == null) {
+                broadcastToAll(gameID, ServerMessage.notification(gameID,
+                        GameService.BOT_USERNAME + " could not find a move"));
+                return;
+            }
+            try {
+                GameService.MoveResult result = gameService.moveBot(gameID, move);
+                broadcastMove(gameID, result.game(), move);
+                broadcastToAll(gameID, ServerMessage.notification(gameID, result.moveNotif()));
+                if (result.extraNotif() != null) {
+                    broadcastToAll(gameID, ServerMessage.notification(gameID, result.extraNotif()));
+                }
+                liveEvals.positionChanged(gameID, result.game());
+                if (result.gameOver()) {
+                    closeBotSeat(gameID);
+                }
+                driveBot(gameID, result.game());
+            } catch (Exception ex) {
+                //the game moved on (resign, leave) while the bot was thinking
+                System.out.printf("Bot move dropped for game %d: %s%n", gameID, ex.getMessage());
+            }
+        }));
     }
 
-    private void handleLeave(WsContext ctx, UserGameCommand cmd)
+    //frees the seat's engine and hash table once the bot's game is over
+    private void closeBotSeat(int gameID) {
+        if (enginePool != null) {
+            enginePool.close(gameID);
+        }
+    }
+
+    private void handleLeave(String sid, UserGameCommand cmd)
         throws ServiceException, DataAccessException {
 
-        int gameID = cmd.getGameID();
-        String auth = cmd.getAuthToken();
-        String sid = ctx.sessionId();
+        var principal = principal(sid, cmd);
+        int gameID = principal.gameID();
+        var conn = connection(sid);
+
+        gameService.leaveAs(principal.username(), gameID);
+        if (principal.color() != null) {
+            //the bot has nobody left to play
+            closeBotSeat(gameID);
+        }
 
-        gameService.leaveGame(auth, gameID);
+        conn.remove(principal);
+        detach(gameID, conn);
+        conn.outbox.conflate(!conn.playing());
 
-        sessionGame.remove(sid);
-        var set = gameSessions.get(gameID);
+        broadcastToOthers(gameID, conn, ServerMessage.notification(gameID, principal.username() + " left the game"));
+    }
 
-        if (set != null) {
-            set.remove(sid);
+    private void handleResign(String sid, UserGameCommand cmd)
+        throws ServiceException, DataAccessException {
+
+        var principal = principal(sid, cmd);
+        int gameID = principal.gameID();
+
+        gameService.resignAs(principal.username(), gameID);
+        closeBotSeat(gameID);
+        //both seats are gone now, and with them the player lane
+        var room = rooms.get(gameID);
+        if (room != null) {
+            for (var conn : room.members()) {
+                var p = conn.in(gameID);
+                if (p != null && p.color() != null) {
+                    conn.put(new Principal(p.username(), p.authToken(), gameID, null, p.deltas()));
+                    rooms.prioritize(gameID, conn, false);
+                    conn.outbox.conflate(!conn.playing());
+                }
+            }
         }
-        activeSessions.remove(sid);
-        String msg = gameService.buildLeaveMessage(auth, gameID);
 
-        broadcastToOthers(gameID, sid, ServerMessage.notification(msg));
+        broadcastToAll(gameID, ServerMessage.notification(gameID, principal.username() + " resigned"));
     }
 
-    private void handleResign(WsContext ctx, UserGameCommand cmd)
+    //observers can opt in to the live engine evaluation
+    private void handleWatchEval(String sid, UserGameCommand cmd)
         throws ServiceException, DataAccessException {
 
-        int gameID = cmd.getGameID();
-        String auth = cmd.getAuthToken();
+        if (liveEvals == null) {
+            throw new ServiceException(400, "Error: live evaluation is not available");
+        }
+        var principal = principal(sid, cmd);
+        if (principal.color() != null) {
+            throw new ServiceException(400, "Error: players cannot watch the evaluation");
+        }
+        liveEvals.watch(principal.gameID(), sid, gameService.loadGame(principal.gameID()));
+    }
 
-        gameService.resignGame(auth, gameID);
+    //a delta client that missed a move asks for the whole board again
+    private void handleResync(String sid, UserGameCommand cmd)
+        throws ServiceException, DataAccessException {
 
-        String msg = gameService.buildResignMessage(auth, gameID);
+        var principal = principal(sid, cmd);
+        var room = rooms.get(principal.gameID());
+        if (room == null) {
+            throw new ServiceException(400, "Error: connect to the game first");
+        }
+        var cached = currentSnapshot(room);
+        (cached != null ? cached : snapshot(room, gameService.loadGame(principal.gameID()))).sendTo(connection(sid));
+    }
 
-        broadcastToAll(gameID, ServerMessage.notification(msg));
+    private void handleUnwatchEval(String sid, UserGameCommand cmd) {
+        if (liveEvals != null) {
+            liveEvals.unwatch(cmd.getGameID(), sid);
+        }
+    }
+
+    //evaluations have no binary form, so they go as text to every watcher
+    private void sendTo(Collection<String> sessionIds, String json) {
+        var frame = SessionOutbox.Frame.text(json, false);
+        for (String sid : sessionIds) {
+            var conn = connections.get(sid);
+            if (conn != null) {
+                conn.outbox.offer(frame);
+            }
+        }
     }
 
     private void broadcastToAll(int gameID, ServerMessage msg) {
-        var sessions = gameSessions.get(gameID);
-        if (sessions == null) {
+        broadcastToOthers(gameID, null, msg);
+    }
+
+    //after a move: the delta to sessions that asked for it, the full board to the rest,
+    //each encoded at most once; rooms keep players first, so they are queued first
+    private void broadcastMove(int gameID, ChessGame game, ChessMove move) {
+        var room = rooms.get(gameID);
+        if (room == null) {
             return;
         }
-//push
-        String json = gson.toJson(msg);
-        for (String sid : sessions) {
-            var c = activeSessions.get(sid);
-            if (c != null) {
-                c.send(json);
+        int seq = ++room.state().moveSeq;
+        var delta = new Outgoing(ServerMessage.moveApplied(gameID, move, seq, statusOf(game)));
+        var snapshot = snapshot(room, game);
+        for (var conn : room.members()) {
+            var principal = conn.in(gameID);
+            if (principal != null && principal.deltas()) {
+                delta.sendTo(conn);
+            } else {
+                snapshot.sendTo(conn);
             }
         }
     }
 
-    private void broadcastToOthers(int gameID, String senderId, ServerMessage msg) {
-        var sessions = gameSessions.get(gameID);
-        if (sessions == null){
+    private static ServerMessage.GameStatus statusOf(ChessGame game) {
+        var toMove = game.getTeamTurn();
+        if (game.isInCheckmate(toMove)) {
+            return ServerMessage.GameStatus.CHECKMATE;
+        }
+        if (game.isInStalemate(toMove)) {
+            return ServerMessage.GameStatus.STALEMATE;
+        }
+        return game.isInCheck(toMove) ? ServerMessage.GameStatus.CHECK : ServerMessage.GameStatus.IN_PROGRESS;
+    }
+
+    private void broadcastToOthers(int gameID, Connection sender, ServerMessage msg) {
+        var room = rooms.get(gameID);
+        if (room == null) {
             return;
         }
+        var out = new Outgoing(msg);
+        for (var conn : room.members()) {
+            if (conn != sender) {
+                out.sendTo(conn);
+            }
+        }
+    }
+
+    private void send(String sid, ServerMessage msg) {
+        var conn = connections.get(sid);
+        if (conn != null) {
+            new Outgoing(msg).sendTo(conn);
+        }
+    }
 
-        String json = gson.toJson(msg);
-        for (String sid : sessions) {
-            if (!sid.equals(senderId)) {
-                var c = activeSessions.get(sid);
-                if (c != null) {
-                    c.send(json);
+    private void closeConnection(Connection conn) {
+        connections.remove(conn.id, conn);
+        conn.outbox.close("logged out");
+    }
+
+    //writes go through Jetty's async API, so a slow client only ever holds up its own outbox
+    private static SessionOutbox.Transport transport(WsContext ctx) {
+        return new SessionOutbox.Transport() {
+            @Override
+            public void send(SessionOutbox.Frame frame, WriteCallback done) {
+                try {
+                    if (frame.binary() != null) {
+                        ctx.session.getRemote().sendBytes(ByteBuffer.wrap(frame.binary()), done);
+                    } else {
+                        ctx.session.getRemote().sendString(frame.text(), done);
+                    }
+                } catch (RuntimeException e) {
+                    done.writeFailed(e);
                 }
             }
+
+            @Override
+            public void close(String reason) {
+                ctx.closeSession(StatusCode.POLICY_VIOLATION, reason);
+            }
+        };
+    }
+
+    //a message on its way to one or more sessions, encoded at most once in each form
+    private final class Outgoing {
+        private final ServerMessage msg;
+        private SessionOutbox.Frame text;
+        private SessionOutbox.Frame binary;
+
+        Outgoing(ServerMessage msg) {
+            this.msg = msg;
+        }
+
+        void sendTo(Connection conn) {
+            conn.outbox.offer(frame(conn.binary), null);
+        }
+
+        void sendTo(Connection conn, WriteCallback done) {
+            conn.outbox.offer(frame(conn.binary), done);
+        }
+
+        private SessionOutbox.Frame frame(boolean wantsBinary) {
+            boolean board = msg.getServerMessageType() == ServerMessage.ServerMessageType.LOAD_GAME;
+            int gameID = (msg.getGameID() == null) ? 0 : msg.getGameID();
+            if (wantsBinary && BinaryCodec.supports(msg)) {
+                if (binary == null) {
+                    binary = SessionOutbox.Frame.binary(BinaryCodec.encode(msg), board, gameID);
+                }
+                return binary;
+            }
+            if (text == null) {
+                text = SessionOutbox.Frame.text(gson.toJson(msg), board, gameID);
+            }
+            return text;
         }
     }
     //hurray
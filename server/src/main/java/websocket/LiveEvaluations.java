@@ -0,0 +1,193 @@
+package websocket;
+
+import chess.ChessGame;
+import com.google.gson.Gson;
+import engine.Engine;
+import engine.Notation;
+import engine.Zobrist;
+import model.Evaluation;
+import service.EnginePool;
+import websocket.messages.ServerMessage;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs one engine analysis per watched game and fans its progress out to every
+ * session watching, however many there are.
+ * <p>
+ * Each completed search iteration is serialized once and parked as the game's
+ * latest update. A single ticker pushes parked updates at most every
+ * {@link #THROTTLE_MILLIS}, so fast early iterations don't flood watchers. The
+ * analysis restarts when the position changes and stops when the last watcher
+ * leaves. If the pool has no stream thread free, the ticker keeps retrying.
+ */
+public class LiveEvaluations {
+
+    public interface Fanout {
+        void send(Collection<String> sessionIds, String json);
+    }
+
+    static final long THROTTLE_MILLIS = 250;
+    private static final Engine.Limits LIMITS = Engine.Limits.millis(20_000);
+
+    private final Gson gson = new Gson();
+    private final EnginePool pool;
+    private final Fanout fanout;
+    private final Map<Integer, Stream> streams = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService ticker;
+
+    //one game's analysis and who is watching it
+    private static final class Stream {
+        final Set<String> watchers = ConcurrentHashMap.newKeySet();
+        Future<?> search;
+        //set while the pool was too busy to start the search
+        ChessGame waiting;
+        long key;
+        long generation;
+        volatile String latest;
+        volatile boolean dirty;
+    }
+
+    public LiveEvaluations(EnginePool pool, Fanout fanout) {
+        this.pool = pool;
+        this.fanout = fanout;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            var t = new Thread(r, "eval-fanout");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::flush, THROTTLE_MILLIS, THROTTLE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds a watcher, starting the game's analysis if nobody was watching the
+     * current position yet. The newest update is sent to the watcher right away.
+     */
+    public void watch(int gameID, String sessionId, ChessGame position) {
+        var stream = streams.compute(gameID, (id, s) -> {
+            var result = (s == null) ? new Stream() : s;
+            result.watchers.add(sessionId);
+            return result;
+        });
+        synchronized (stream) {
+            if ((stream.search == null && stream.waiting == null) || stream.key != Zobrist.key(position)) {
+                restart(gameID, stream, position);
+            }
+        }
+        String latest = stream.latest;
+        if (latest != null) {
+            fanout.send(List.of(sessionId), latest);
+        }
+    }
+
+    public void unwatch(int gameID, String sessionId) {
+        streams.computeIfPresent(gameID, (id, s) -> {
+            s.watchers.remove(sessionId);
+            if (!s.watchers.isEmpty()) {
+                return s;
+            }
+            synchronized (s) {
+                stop(s);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Moves a watched game's analysis on to its new position.
+     */
+    public void positionChanged(int gameID, ChessGame position) {
+        var stream = streams.get(gameID);
+        if (stream == null) {
+            return;
+        }
+        synchronized (stream) {
+            if (!stream.watchers.isEmpty() && stream.key != Zobrist.key(position)) {
+                restart(gameID, stream, position);
+            }
+        }
+    }
+
+    public boolean isWatching(int gameID, String sessionId) {
+        var stream = streams.get(gameID);
+        return stream != null && stream.watchers.contains(sessionId);
+    }
+
+    public void shutdown() {
+        ticker.shutdownNow();
+        for (var stream : streams.values()) {
+            synchronized (stream) {
+                stop(stream);
+            }
+        }
+        streams.clear();
+    }
+
+    //helpers, callers hold the stream lock
+    private void restart(int gameID, Stream stream, ChessGame position) {
+        stop(stream);
+        stream.key = Zobrist.key(position);
+        stream.latest = null;
+        start(gameID, stream, new ChessGame(position));
+    }
+
+    private void start(int gameID, Stream stream, ChessGame position) {
+        long generation = stream.generation;
+        boolean whiteToMove = position.getTeamTurn() == ChessGame.TeamColor.WHITE;
+        stream.search = pool.stream(position, LIMITS, result -> {
+            var eval = toEvaluation(result, whiteToMove);
+            String json = gson.toJson(ServerMessage.evaluation(gameID, eval));
+            synchronized (stream) {
+                if (stream.generation == generation) {
+                    stream.latest = json;
+                    stream.dirty = true;
+                }
+            }
+        });
+        stream.waiting = (stream.search == null) ? position : null;
+    }
+
+    private static void stop(Stream stream) {
+        stream.generation++;
+        stream.waiting = null;
+        if (stream.search != null) {
+            stream.search.cancel(true);
+            stream.search = null;
+        }
+    }
+
+    private void flush() {
+        for (var entry : streams.entrySet()) {
+            var stream = entry.getValue();
+            synchronized (stream) {
+                if (stream.waiting != null && !stream.watchers.isEmpty()) {
+                    start(entry.getKey(), stream, stream.waiting);
+                }
+            }
+        }
+        for (var stream : streams.values()) {
+            if (stream.dirty) {
+                stream.dirty = false;
+                String json = stream.latest;
+                if (json != null) {
+                    fanout.send(stream.watchers, json);
+                }
+            }
+        }
+    }
+
+    private static Evaluation toEvaluation(Engine.Result r, boolean whiteToMove) {
+        int sign = whiteToMove ? 1 : -1;
+        return new Evaluation(r.depth(), sign * r.score(), sign * r.mateIn(),
+                r.bestMove() == null ? null : Notation.of(r.bestMove()),
+                Notation.of(r.pv()), r.nodes());
+    }
+}
@@ -0,0 +1,208 @@
+package websocket;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The sessions in each game, keyed by the game's {@code int} ID.
+ * <p>
+ * Reads never lock and never box. The table from game ID to room is an
+ * open-addressed array pair. Each room's members are a plain array. Both are
+ * copy-on-write: a change builds a new array and publishes it, so a broadcast
+ * iterates whatever array it read, with no per-recipient map lookups. Changes
+ * (joins and leaves) take one lock. A room is created by its first join and
+ * removed by its last leave, so rooms don't pile up as games come and go.
+ * <p>
+ * Members can be joined with priority. Priority members sit at the front of the
+ * array, so iterating a room reaches them first.
+ *
+ * @param <M> the session handle
+ * @param <S> per-room state, created with the room and dropped with it
+ */
+public class RoomRegistry<M, S> {
+
+    public static final class Room<M, S> {
+        private final int gameID;
+        private final S state;
+        private volatile Object[] members = new Object[0];
+        //how many of members are at the front with priority; only used under the registry lock
+        private int priority;
+
+        private Room(int gameID, S state) {
+            this.gameID = gameID;
+            this.state = state;
+        }
+
+        public int gameID() {
+            return gameID;
+        }
+
+        public S state() {
+            return state;
+        }
+
+        /**
+         * @return the members as of now, priority members first; later changes don't show
+         */
+        @SuppressWarnings("unchecked")
+        public List<M> members() {
+            return (List<M>) Collections.unmodifiableList(Arrays.asList(members));
+        }
+
+        public int size() {
+            return members.length;
+        }
+    }
+
+    //keys and rooms, swapped as a whole so readers always see a matching pair
+    private record Table(int[] keys, Room<?, ?>[] rooms, int size) {}
+
+    private final Supplier<S> newState;
+    private volatile Table table = new Table(new int[8], new Room<?, ?>[8], 0);
+
+    public RoomRegistry(Supplier<S> newState) {
+        this.newState = newState;
+    }
+
+    /**
+     * @return the game's room, or null if nobody is in it
+     */
+    @SuppressWarnings("unchecked")
+    public Room<M, S> get(int gameID) {
+        var t = table;
+        int mask = t.keys().length - 1;
+        for (int i = mix(gameID) & mask; t.rooms()[i] != null; i = (i + 1) & mask) {
+            if (t.keys()[i] == gameID) {
+                return (Room<M, S>) t.rooms()[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return number of rooms with anyone in them
+     */
+    public int size() {
+        return table.size();
+    }
+
+    /**
+     * Adds the member to the game's room, creating the room if needed. Joining
+     * again just updates its priority.
+     */
+    public synchronized Room<M, S> join(int gameID, M member, boolean priority) {
+        var room = get(gameID);
+        if (room == null) {
+            room = new Room<>(gameID, newState.get());
+            table = with(table, room);
+        }
+        remove(room, member);
+        insert(room, member, priority);
+        return room;
+    }
+
+    /**
+     * Moves the member in or out of the priority group, if it is in the room.
+     */
+    public synchronized void prioritize(int gameID, M member, boolean priority) {
+        var room = get(gameID);
+        if (room != null && remove(room, member)) {
+            insert(room, member, priority);
+        }
+    }
+
+    /**
+     * Removes the member, and the room too once it is empty.
+     *
+     * @return false if the member wasn't in the room
+     */
+    public synchronized boolean leave(int gameID, M member) {
+        var room = get(gameID);
+        if (room == null || !remove(room, member)) {
+            return false;
+        }
+        if (room.members.length == 0) {
+            table = without(table, gameID);
+        }
+        return true;
+    }
+
+    //helpers, all under the lock
+
+    private static <M> void insert(Room<M, ?> room, M member, boolean priority) {
+        var old = room.members;
+        var next = new Object[old.length + 1];
+        int at = priority ? room.priority : old.length;
+        System.arraycopy(old, 0, next, 0, at);
+        next[at] = member;
+        System.arraycopy(old, at, next, at + 1, old.length - at);
+        if (priority) {
+            room.priority++;
+        }
+        room.members = next;
+    }
+
+    private static <M> boolean remove(Room<M, ?> room, M member) {
+        var old = room.members;
+        for (int i = 0; i < old.length; i++) {
+            if (old[i].equals(member)) {
+                var next = new Object[old.length - 1];
+                System.arraycopy(old, 0, next, 0, i);
+                System.arraycopy(old, i + 1, next, i, old.length - i - 1);
+                if (i < room.priority) {
+                    room.priority--;
+                }
+                room.members = next;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //a copy of the table with the room added, grown to stay at most half full
+    private static Table with(Table t, Room<?, ?> room) {
+        int capacity = t.keys().length;
+        if ((t.size() + 1) * 2 > capacity) {
+            capacity *= 2;
+        }
+        var keys = new int[capacity];
+        var rooms = new Room<?, ?>[capacity];
+        for (var r : t.rooms()) {
+            if (r != null) {
+                place(keys, rooms, r);
+            }
+        }
+        place(keys, rooms, room);
+        return new Table(keys, rooms, t.size() + 1);
+    }
+
+    //rebuilt rather than tombstoned, so lookups only ever stop at an empty slot
+    private static Table without(Table t, int gameID) {
+        var keys = new int[t.keys().length];
+        var rooms = new Room<?, ?>[t.rooms().length];
+        for (var r : t.rooms()) {
+            if (r != null && r.gameID != gameID) {
+                place(keys, rooms, r);
+            }
+        }
+        return new Table(keys, rooms, t.size() - 1);
+    }
+
+    private static void place(int[] keys, Room<?, ?>[] rooms, Room<?, ?> room) {
+        int mask = keys.length - 1;
+        int i = mix(room.gameID) & mask;
+        while (rooms[i] != null) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = room.gameID;
+        rooms[i] = room;
+    }
+
+    //game IDs are sequential, so spread them before masking
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,359 @@
+package websocket;
+
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outbound messages for one websocket session.
+ * <p>
+ * Senders only queue a frame and return. The frames are written one at a time,
+ * in order, and each write starts when the previous one completes. A slow client
+ * therefore backs up its own queue and never holds up the thread broadcasting to
+ * everyone else. The queue is bounded. When it fills, {@link Overflow} decides
+ * whether superseded boards are dropped or the session is closed.
+ * <p>
+ * An outbox can also conflate, which suits observers. Frames are then held for
+ * a short window and sent together, and a newer board replaces any board still
+ * held. In a fast game an observer gets the latest position rather than every
+ * one in between. Sessions that don't conflate, the players, send straight away.
+ */
+public class SessionOutbox {
+
+    public enum Overflow {
+        /**
+         * Drop queued boards that a newer board replaces. Close the session if
+         * that doesn't free a slot.
+         */
+        DROP_STALE,
+        /**
+         * Close the session as soon as the queue is full.
+         */
+        DISCONNECT
+    }
+
+    /**
+     * @param conflateMillis how long a conflating outbox holds frames; 0 turns conflation off
+     */
+    public record Limits(int capacity, Overflow overflow, long conflateMillis) {
+        public static final String CAPACITY_PROPERTY = "chess.ws.queue";
+        public static final String OVERFLOW_PROPERTY = "chess.ws.overflow";
+        public static final String CONFLATE_PROPERTY = "chess.ws.conflateMillis";
+
+        public Limits(int capacity, Overflow overflow) {
+            this(capacity, overflow, 0);
+        }
+
+        /**
+         * From {@code -Dchess.ws.queue}, {@code -Dchess.ws.overflow} and
+         * {@code -Dchess.ws.conflateMillis}. The defaults are 256 frames,
+         * {@link Overflow#DROP_STALE} and a 50 ms window.
+         */
+        public static Limits fromSystemProperties() {
+            return new Limits(Integer.getInteger(CAPACITY_PROPERTY, 256),
+                    Overflow.valueOf(System.getProperty(OVERFLOW_PROPERTY, Overflow.DROP_STALE.name())),
+                    Long.getLong(CONFLATE_PROPERTY, 50));
+        }
+    }
+
+    /**
+     * One encoded message. Exactly one of text or binary is set. A board is a
+     * full game state, which a later board of the same game makes redundant.
+     */
+    public record Frame(String text, byte[] binary, boolean board, int gameID) {
+        public static Frame text(String text, boolean board) {
+            return new Frame(text, null, board, 0);
+        }
+
+        public static Frame binary(byte[] binary, boolean board) {
+            return new Frame(null, binary, board, 0);
+        }
+
+        public static Frame text(String text, boolean board, int gameID) {
+            return new Frame(text, null, board, gameID);
+        }
+
+        public static Frame binary(byte[] binary, boolean board, int gameID) {
+            return new Frame(null, binary, board, gameID);
+        }
+
+        //a session can follow several games, and one game's board says nothing about another's
+        boolean replaces(Frame older) {
+            return board && older.board && gameID == older.gameID;
+        }
+    }
+
+    /**
+     * Where the frames actually go.
+     */
+    public interface Transport {
+        //must complete the callback exactly once, possibly before returning
+        void send(Frame frame, WriteCallback done);
+
+        void close(String reason);
+    }
+
+    private record Pending(Frame frame, WriteCallback done) {}
+
+    private final Transport transport;
+    private final Limits limits;
+    private final ScheduledExecutorService timer;
+    private final Deque<Pending> queue = new ArrayDeque<>();
+    //frames waiting out the conflation window, in arrival order
+    private final List<Pending> held = new ArrayList<>();
+    private boolean writing;
+    private boolean closed;
+    private boolean conflating;
+    private boolean flushScheduled;
+    private boolean flushing;
+    private long dropped;
+
+    public SessionOutbox(Transport transport, Limits limits) {
+        this(transport, limits, null);
+    }
+
+    /**
+     * @param timer ends conflation windows; without one the outbox never conflates
+     */
+    public SessionOutbox(Transport transport, Limits limits, ScheduledExecutorService timer) {
+        this.transport = transport;
+        this.limits = limits;
+        this.timer = timer;
+    }
+
+    /**
+     * Turns conflation on or off. Turning it off sends anything held right away.
+     */
+    public void conflate(boolean on) {
+        synchronized (this) {
+            conflating = on && timer != null && limits.conflateMillis() > 0;
+        }
+        if (!on) {
+            flush();
+        }
+    }
+
+    public boolean offer(Frame frame) {
+        return offer(frame, null);
+    }
+
+    /**
+     * Queues the frame behind anything already waiting.
+     *
+     * @param done told when the frame has been written, or that it never will be
+     *             because it was dropped or the session closed; may be null
+     * @return false if the session has been closed, now or earlier
+     */
+    public boolean offer(Frame frame, WriteCallback done) {
+        List<WriteCallback> superseded = new ArrayList<>();
+        boolean hold;
+        boolean flushNow = false;
+        boolean schedule = false;
+        synchronized (this) {
+            //once anything is held, later frames wait behind it even if conflation just ended
+            hold = !closed && (conflating || flushing || !held.isEmpty());
+            if (hold) {
+                if (frame.board()) {
+                    for (Iterator<Pending> it = held.iterator(); it.hasNext(); ) {
+                        var p = it.next();
+                        if (frame.replaces(p.frame())) {
+                            it.remove();
+                            dropped++;
+                            superseded.add(p.done());
+                        }
+                    }
+                }
+                held.add(new Pending(frame, done));
+                flushNow = !conflating || held.size() >= limits.capacity();
+                schedule = !flushNow && !flushScheduled;
+                flushScheduled |= schedule;
+            }
+        }
+        superseded.forEach(SessionOutbox::fail);
+        if (hold) {
+            if (flushNow) {
+                flush();
+            } else if (schedule) {
+                try {
+                    timer.schedule(this::windowEnded, limits.conflateMillis(), TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    flush();
+                }
+            }
+            return true;
+        }
+        return enqueue(frame, done);
+    }
+
+    //straight onto the send queue, applying the overflow policy
+    private boolean enqueue(Frame frame, WriteCallback done) {
+        List<WriteCallback> discarded = new ArrayList<>();
+        boolean wasClosed;
+        boolean accepted = false;
+        boolean start = false;
+        synchronized (this) {
+            wasClosed = closed;
+            if (!closed && (queue.size() < limits.capacity() || makeRoom(frame, discarded))) {
+                queue.add(new Pending(frame, done));
+                accepted = true;
+                start = !writing;
+                writing = true;
+            }
+        }
+        //callbacks run outside the lock
+        discarded.forEach(SessionOutbox::fail);
+        if (!accepted) {
+            fail(done);
+            if (!wasClosed) {
+                close("Error: too far behind, reconnect");
+            }
+            return false;
+        }
+        if (start) {
+            writeNext();
+        }
+        return true;
+    }
+
+    /**
+     * Stops writing and fails everything still queued. With a reason, the
+     * session is closed with it too.
+     */
+    public void close(String reason) {
+        Deque<Pending> abandoned;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            abandoned = new ArrayDeque<>(held);
+            abandoned.addAll(queue);
+            held.clear();
+            queue.clear();
+        }
+        abandoned.forEach(p -> fail(p.done()));
+        if (reason != null) {
+            transport.close(reason);
+        }
+    }
+
+    public synchronized int queued() {
+        return held.size() + queue.size();
+    }
+
+    /**
+     * @return boards dropped because a newer one replaced them before sending,
+     * whether by conflation or on overflow
+     */
+    public synchronized long dropped() {
+        return dropped;
+    }
+
+    //helpers
+
+    private void windowEnded() {
+        synchronized (this) {
+            flushScheduled = false;
+        }
+        flush();
+    }
+
+    //moves everything held to the send queue in order; one thread at a time, and it
+    //keeps going until nothing is held so frames that arrive meanwhile aren't reordered
+    private void flush() {
+        synchronized (this) {
+            if (flushing) {
+                return;
+            }
+            flushing = true;
+        }
+        while (true) {
+            List<Pending> ready;
+            synchronized (this) {
+                if (held.isEmpty() || closed) {
+                    flushing = false;
+                    return;
+                }
+                ready = new ArrayList<>(held);
+                held.clear();
+            }
+            for (var p : ready) {
+                if (!enqueue(p.frame(), p.done())) {
+                    synchronized (this) {
+                        flushing = false;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    //under the lock: frees a slot if the policy allows it
+    private boolean makeRoom(Frame incoming, List<WriteCallback> discarded) {
+        if (limits.overflow() != Overflow.DROP_STALE) {
+            return false;
+        }
+        //a queued board is stale once a newer board of its game is queued behind it or arriving now
+        Set<Integer> newerBoard = new HashSet<>();
+        if (incoming.board()) {
+            newerBoard.add(incoming.gameID());
+        }
+        boolean freed = false;
+        for (Iterator<Pending> it = queue.descendingIterator(); it.hasNext(); ) {
+            var p = it.next();
+            if (!p.frame().board()) {
+                continue;
+            }
+            if (!newerBoard.add(p.frame().gameID())) {
+                it.remove();
+                dropped++;
+                discarded.add(p.done());
+                freed = true;
+            }
+        }
+        return freed;
+    }
+
+    private void writeNext() {
+        Pending next;
+        synchronized (this) {
+            next = closed ? null : queue.poll();
+            if (next == null) {
+                writing = false;
+                return;
+            }
+        }
+        transport.send(next.frame(), new WriteCallback() {
+            @Override
+            public void writeSuccess() {
+                if (next.done() != null) {
+                    next.done().writeSuccess();
+                }
+                writeNext();
+            }
+
+            @Override
+            public void writeFailed(Throwable x) {
+                if (next.done() != null) {
+                    next.done().writeFailed(x);
+                }
+                close(null);
+            }
+        });
+    }
+
+    private static void fail(WriteCallback done) {
+        if (done != null) {
+            done.writeFailed(new IllegalStateException("not sent"));
+        }
+    }
+}
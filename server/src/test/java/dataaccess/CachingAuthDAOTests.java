@@ -0,0 +1,45 @@
+package dataaccess;
+
+import model.AuthData;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingAuthDAOTests {
+
+    @Test
+    public void repeatLookupsHitUntilLogout() throws Exception {
+        var auths = new CachingAuthDAO(new AuthDataDAO(), 100, 60_000);
+        auths.insert(new AuthData("tok", "alice"));
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("alice", auths.find("tok").username());
+        }
+        assertEquals(1, auths.stats().misses());
+        assertEquals(4, auths.stats().hits());
+
+        auths.delete("tok");
+        assertNull(auths.find("tok"));
+    }
+
+    @Test
+    public void entriesExpireAndClearDropsEverything() throws Exception {
+        var store = new AuthDataDAO();
+        var auths = new CachingAuthDAO(store, 100, 30);
+        auths.insert(new AuthData("a", "alice"));
+        auths.insert(new AuthData("b", "bob"));
+        auths.find("a");
+        auths.find("b");
+
+        //removed behind the cache's back: still served until the TTL runs out
+        store.delete("a");
+        assertNotNull(auths.find("a"));
+        Thread.sleep(60);
+        assertNull(auths.find("a"));
+        assertEquals(1, auths.stats().expired());
+
+        auths.clear();
+        assertEquals(0, auths.stats().size());
+        assertNull(auths.find("b"));
+    }
+}
@@ -0,0 +1,115 @@
+package dataaccess;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import model.GameData;
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingGameDAOTests {
+
+    //in-memory games that count how often the cache reaches them
+    private static class CountingGames extends GameDataDAO {
+        final AtomicInteger finds = new AtomicInteger();
+        final AtomicInteger updates = new AtomicInteger();
+        final AtomicInteger moveWrites = new AtomicInteger();
+        volatile boolean failMoves;
+
+        @Override
+        public GameData find(int gameID) throws DataAccessException {
+            finds.incrementAndGet();
+            return super.find(gameID);
+        }
+
+        @Override
+        public void update(GameData game) throws DataAccessException {
+            updates.incrementAndGet();
+            super.update(game);
+        }
+
+        @Override
+        public void addMove(int gameID, ChessMove move) throws DataAccessException {
+            if (failMoves) {
+                failMoves = false;
+                throw new DataAccessException("move insert failed");
+            }
+            moveWrites.incrementAndGet();
+            super.addMove(gameID, move);
+        }
+    }
+
+    @Test
+    public void writesAreCoalescedAndFlushedOnClose() throws Exception {
+        var store = new CountingGames();
+        var games = new CachingGameDAO(store, 16, 60_000, 60_000);
+        int id = games.create("cached").gameID();
+
+        for (int i = 0; i < 10; i++) {
+            var read = games.find(id);
+            assertTrue(games.update(read.version(), new GameData(id, null, null, "cached", new ChessGame())));
+        }
+        var read = games.find(id);
+        assertFalse(games.update(read.version() - 1, new GameData(id, null, null, "stale", null)));
+
+        assertEquals(0, store.finds.get());
+        assertEquals(0, store.updates.get());
+        assertNull(store.find(id).game());
+
+        games.close();
+        assertEquals(1, store.updates.get());
+        assertNotNull(store.find(id).game());
+    }
+
+    @Test
+    public void idleGamesAreWrittenBackAndEvicted() throws Exception {
+        var store = new CountingGames();
+        var games = new CachingGameDAO(store, 16, 50, 20);
+        try {
+            int id = games.create("idle").gameID();
+            games.update(new GameData(id, "w", null, "idle", null));
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (games.stats().evictions() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(1, games.stats().evictions());
+            assertEquals("w", store.find(id).whiteUsername());
+
+            //the next read goes back to the store
+            int before = store.finds.get();
+            assertEquals("w", games.find(id).whiteUsername());
+            assertEquals(before + 1, store.finds.get());
+        } finally {
+            games.close();
+        }
+    }
+
+    @Test
+    public void movesWaitForTheFlushAndSurviveAFailedOne() throws Exception {
+        var store = new CountingGames();
+        var games = new CachingGameDAO(store, 16, 60_000, 60_000);
+        int id = games.create("moves").gameID();
+        var e4 = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        var e5 = new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null);
+
+        games.addMove(id, e4);
+        games.addMove(id, e5);
+        //nothing reached the store yet, but readers still see the whole list
+        assertEquals(0, store.moveWrites.get());
+        assertEquals(List.of(e4, e5), games.moves(id));
+
+        store.failMoves = true;
+        assertThrows(DataAccessException.class, games::close);
+        assertEquals(List.of(e4, e5), games.moves(id));
+
+        games.close();
+        assertEquals(List.of(e4, e5), store.moves(id));
+        assertEquals(List.of(e4, e5), games.moves(id));
+        assertEquals(2, store.updates.get());
+    }
+}
@@ -0,0 +1,75 @@
+package dataaccess;
+
+import org.junit.jupiter.api.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//runs against fake connections, no MySQL needed
+public class ConnectionPoolTests {
+
+    private final AtomicInteger opened = new AtomicInteger();
+    private final AtomicInteger rollbacks = new AtomicInteger();
+
+    private Connection fake() {
+        opened.incrementAndGet();
+        var autoCommit = new boolean[]{true};
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "isClosed" -> false;
+                    case "isValid" -> true;
+                    case "getAutoCommit" -> autoCommit[0];
+                    case "setAutoCommit" -> {
+                        autoCommit[0] = (Boolean) args[0];
+                        yield null;
+                    }
+                    case "rollback" -> {
+                        rollbacks.incrementAndGet();
+                        yield null;
+                    }
+                    default -> null;
+                });
+    }
+
+    @Test
+    public void closedConnectionsAreReused() throws Exception {
+        var pool = new ConnectionPool(this::fake, 2, 100);
+        for (int i = 0; i < 10; i++) {
+            try (var conn = pool.borrow()) {
+                assertFalse(conn.isClosed());
+            }
+        }
+        assertEquals(1, opened.get());
+        assertEquals(10, pool.stats().borrows());
+        assertEquals(1, pool.stats().idle());
+    }
+
+    @Test
+    public void borrowTimesOutWhenExhausted() throws Exception {
+        var pool = new ConnectionPool(this::fake, 1, 50);
+        try (var held = pool.borrow()) {
+            assertThrows(DataAccessException.class, pool::borrow);
+            assertEquals(1, pool.stats().timeouts());
+        }
+        try (var again = pool.borrow()) {
+            assertNotNull(again);
+        }
+    }
+
+    @Test
+    public void unfinishedTransactionIsRolledBackOnReturn() throws Exception {
+        var pool = new ConnectionPool(this::fake, 1, 100);
+        var conn = pool.borrow();
+        conn.setAutoCommit(false);
+        conn.close();
+        assertEquals(1, rollbacks.get());
+        assertTrue(conn.isClosed());
+        assertThrows(java.sql.SQLException.class, () -> conn.prepareStatement("SELECT 1"));
+        try (var next = pool.borrow()) {
+            assertTrue(next.getAutoCommit());
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package dataaccess;
 
+import chess.ChessMove;
+import chess.ChessPosition;
 import model.AuthData;
 import model.GameData;
 import model.UserData;
 import org.junit.jupiter.api.*;
 import org.mindrot.jbcrypt.BCrypt;
 import java.util.Collection;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -142,6 +145,75 @@ public class DatabaseTests {
         assertThrows(DataAccessException.class, () -> games.update(bogus));
     }
 
+    @Test
+    void versionedUpdateRejectsStaleVersion() throws Exception {
+        var g = games.create("Versioned");
+        int id = g.gameID();
+        assertEquals(0, games.find(id).version());
+
+        assertTrue(games.update(0, new GameData(id, null, null, "First", null)));
+        assertFalse(games.update(0, new GameData(id, null, null, "Stale", null)));
+
+        var after = games.find(id);
+        assertEquals("First", after.gameName());
+        assertEquals(1, after.version());
+    }
+
+    @Test
+    void movesAreKeptInOrderOutsideTheGameRow() throws Exception {
+        var g = games.create("Moves");
+        int id = g.gameID();
+        assertTrue(games.moves(id).isEmpty());
+
+        var e4 = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        var e5 = new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null);
+        games.addMove(id, e4);
+        games.addMove(id, e5);
+        assertEquals(List.of(e4, e5), games.moves(id));
+        assertThrows(DataAccessException.class, () -> games.addMove(id + 1000, e4));
+
+        games.clear();
+        assertTrue(games.moves(id).isEmpty());
+    }
+
+    //transactions
+
+    @Test
+    void transactionCommitsTogether() throws Exception {
+        var users = new SqlUserDAO();
+        var auths = new SqlAuthDAO();
+        var auth = DatabaseManager.inTransaction(tx -> {
+            users.insert(new UserData("txUser", "pw", "t@t.com"));
+            return auths.issue("txUser");
+        }, null);
+        assertNotNull(users.find("txUser"));
+        assertEquals("txUser", auths.find(auth.authToken()).username());
+    }
+
+    @Test
+    void transactionRollsBackWhenWorkThrows() throws Exception {
+        var users = new SqlUserDAO();
+        var ex = assertThrows(IllegalStateException.class, () -> DatabaseManager.inTransaction(tx -> {
+            users.insert(new UserData("ghost", "pw", "g@g.com"));
+            throw new IllegalStateException("boom");
+        }, null));
+        assertEquals("boom", ex.getMessage());
+        assertNull(users.find("ghost"));
+    }
+
+    @Test
+    void nestedTransactionJoinsOuter() throws Exception {
+        var users = new SqlUserDAO();
+        assertThrows(DataAccessException.class, () -> DatabaseManager.inTransaction(tx -> {
+            DatabaseManager.inTransaction(inner -> {
+                users.insert(new UserData("nested", "pw", "n@n.com"));
+                return null;
+            }, null);
+            throw new DataAccessException("outer failed");
+        }, null));
+        assertNull(users.find("nested"));
+    }
+
     //user DAO tests
 
     @Nested
@@ -0,0 +1,48 @@
+package dataaccess;
+
+import org.junit.jupiter.api.*;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SignedAuthDAOTests {
+
+    private static final byte[] SECRET = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void issuedTokensVerifyUntilLogout() throws Exception {
+        var auths = new SignedAuthDAO(SECRET, 60_000);
+        var auth = auths.issue("alice");
+        assertEquals("alice", auths.find(auth.authToken()).username());
+
+        //another node with the same secret accepts it too
+        assertEquals("alice", new SignedAuthDAO(SECRET, 60_000).find(auth.authToken()).username());
+
+        auths.delete(auth.authToken());
+        assertNull(auths.find(auth.authToken()));
+        assertEquals(1, auths.revocations());
+    }
+
+    @Test
+    public void forgedExpiredAndClearedTokensAreRejected() throws Exception {
+        var auths = new SignedAuthDAO(SECRET, 60_000);
+        String token = auths.issue("alice").authToken();
+
+        String forged = token.substring(0, token.indexOf('.') + 1) + "AAAA";
+        assertNull(auths.find(forged));
+        assertNull(auths.find("not-a-token"));
+        var other = new SignedAuthDAO("fedcba9876543210fedcba9876543210".getBytes(StandardCharsets.UTF_8), 60_000);
+        assertNull(other.find(token));
+
+        var shortLived = new SignedAuthDAO(SECRET, 1);
+        String expiring = shortLived.issue("bob").authToken();
+        Thread.sleep(5);
+        assertNull(shortLived.find(expiring));
+
+        Thread.sleep(2);
+        auths.clear();
+        assertNull(auths.find(token));
+        assertNotNull(auths.find(auths.issue("alice").authToken()));
+    }
+}
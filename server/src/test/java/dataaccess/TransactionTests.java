@@ -0,0 +1,70 @@
+package dataaccess;
+
+import model.GameData;
+import model.UserData;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//the in-memory backend, no MySQL needed
+public class TransactionTests {
+
+    private DataAccessDAO db;
+
+    @BeforeEach
+    public void setUp() {
+        db = new DataAccessDAO();
+    }
+
+    @Test
+    public void committedWorkStays() throws Exception {
+        var auth = db.inTransaction(tx -> {
+            tx.users().insert(new UserData("ann", "pw", "a@a.com"));
+            return tx.auths().issue("ann");
+        });
+        assertNotNull(db.users().find("ann"));
+        assertEquals("ann", db.auths().find(auth.authToken()).username());
+    }
+
+    @Test
+    public void failedWorkIsUndone() throws Exception {
+        var game = db.games().create("kept");
+        db.users().insert(new UserData("old", "pw", "o@o.com"));
+        var oldAuth = db.auths().issue("old");
+
+        var ex = assertThrows(IllegalStateException.class, () -> db.inTransaction(tx -> {
+            tx.users().insert(new UserData("bob", "pw", "b@b.com"));
+            tx.auths().delete(oldAuth.authToken());
+            tx.games().update(0, new GameData(game.gameID(), "bob", null, "renamed", null));
+            tx.games().create("dropped");
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals("boom", ex.getMessage());
+
+        assertNull(db.users().find("bob"));
+        assertNotNull(db.auths().find(oldAuth.authToken()));
+        var after = db.games().find(game.gameID());
+        assertEquals("kept", after.gameName());
+        assertEquals(0, after.version());
+        assertEquals(1, db.games().list().size());
+    }
+
+    @Test
+    public void nestedWorkJoinsTheOuterTransaction() throws Exception {
+        assertThrows(DataAccessException.class, () -> db.inTransaction(tx -> {
+            tx.inTransaction(inner -> {
+                inner.users().insert(new UserData("inner", "pw", "i@i.com"));
+                return null;
+            });
+            //the inner work finished, but its write goes with the outer failure
+            throw new DataAccessException("outer failed");
+        }));
+        assertNull(db.users().find("inner"));
+
+        db.inTransaction(tx -> tx.inTransaction(inner -> {
+            inner.users().insert(new UserData("both", "pw", "b@b.com"));
+            return null;
+        }));
+        assertNotNull(db.users().find("both"));
+    }
+}
@@ -0,0 +1,156 @@
+package server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares the platform-thread and virtual-thread server modes under many
+ * concurrent clients.
+ * <p>
+ * For each mode it starts a server on a free port, signs one user in, creates a
+ * few games and then has every client list games and join a seat in a loop for
+ * a fixed time. Both calls authenticate and read MySQL, so handlers spend most of
+ * their time blocked. It prints throughput, latency percentiles and errors per
+ * mode and client count. It needs the database from db.properties, and clears it,
+ * so it lives in the test sources and never ships in the server jar; run it from
+ * the test classpath, not against a database you want to keep.
+ */
+public class LoadBenchmark {
+
+    private record Result(String mode, int clients, long requests, long errors, double seconds,
+                          double p50Millis, double p99Millis, double maxMillis) {
+        @Override
+        public String toString() {
+            return String.format("%-8s %6d clients  %8.0f req/s  p50 %7.1f ms  p99 %7.1f ms  max %7.1f ms  %d errors",
+                    mode, clients, requests / seconds, p50Millis, p99Millis, maxMillis, errors);
+        }
+    }
+
+    private static final Gson GSON = new Gson();
+    private static final int GAMES = 32;
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    /**
+     * Usage: {@code LoadBenchmark [seconds per run] [client counts...]}.
+     */
+    public static void main(String[] args) throws Exception {
+        int seconds = (args.length > 0) ? Integer.parseInt(args[0]) : 15;
+        int[] clients = (args.length > 1)
+                ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray()
+                : new int[]{50, 500, 2000};
+
+        var bench = new LoadBenchmark();
+        List<Result> results = new ArrayList<>();
+        for (int n : clients) {
+            for (boolean virtual : new boolean[]{false, true}) {
+                var result = bench.run(virtual, n, seconds);
+                System.out.println(result);
+                results.add(result);
+            }
+        }
+        System.out.println();
+        results.forEach(System.out::println);
+        System.exit(0);
+    }
+
+    private Result run(boolean virtualThreads, int clients, int seconds) throws Exception {
+        var server = new Server(virtualThreads);
+        int port = server.run(0);
+        String base = "http://localhost:" + port;
+        try {
+            send("DELETE", base + "/db", null, null);
+            var auth = send("POST", base + "/user", null,
+                    "{\"username\":\"bench\",\"password\":\"bench\",\"email\":\"b@b.com\"}");
+            String token = GSON.fromJson(auth.body(), JsonObject.class).get("authToken").getAsString();
+            int[] games = new int[GAMES];
+            for (int i = 0; i < GAMES; i++) {
+                var created = send("POST", base + "/game", token, "{\"gameName\":\"bench" + i + "\"}");
+                games[i] = GSON.fromJson(created.body(), JsonObject.class).get("gameID").getAsInt();
+            }
+
+            var requests = new LongAdder();
+            var errors = new LongAdder();
+            //latencies in microseconds, one list per client so recording is uncontended
+            List<long[]> samples = new ArrayList<>();
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            var done = new CountDownLatch(clients);
+            long start = System.nanoTime();
+            for (int c = 0; c < clients; c++) {
+                int gameID = games[c % GAMES];
+                long[] mine = new long[1 << 16];
+                samples.add(mine);
+                Thread.ofVirtual().start(() -> {
+                    int n = 0;
+                    try {
+                        while (System.nanoTime() < deadline) {
+                            long t0 = System.nanoTime();
+                            //after the first join the seat is taken, so 403 is the expected answer
+                            boolean ok = (n % 2 == 0)
+                                    ? send("GET", base + "/game", token, null).statusCode() == 200
+                                    : send("PUT", base + "/game", token,
+                                    "{\"playerColor\":\"WHITE\",\"gameID\":" + gameID + "}").statusCode() / 100 != 5;
+                            mine[n % mine.length] = (System.nanoTime() - t0) / 1000;
+                            n++;
+                            requests.increment();
+                            if (!ok) {
+                                errors.increment();
+                            }
+                        }
+                    } catch (Exception e) {
+                        errors.increment();
+                    } finally {
+                        mine[mine.length - 1] = Math.min(n, mine.length - 1);
+                        done.countDown();
+                    }
+                });
+            }
+            done.await();
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            long[] all = samples.stream()
+                    .flatMapToLong(s -> Arrays.stream(s, 0, (int) s[s.length - 1]))
+                    .sorted()
+                    .toArray();
+            return new Result(virtualThreads ? "virtual" : "platform", clients, requests.sum(), errors.sum(),
+                    elapsed, percentile(all, 0.50), percentile(all, 0.99),
+                    all.length == 0 ? 0 : all[all.length - 1] / 1000.0);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private HttpResponse<String> send(String method, String url, String token, String body) throws Exception {
+        var request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(30))
+                .method(method, body == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) {
+            request.header("authorization", token);
+        }
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)))] / 1000.0;
+    }
+}
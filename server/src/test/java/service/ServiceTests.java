@@ -1,9 +1,25 @@
 package service;
 
 import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import engine.Engine;
+import engine.Fen;
+import engine.Notation;
+import model.AuthData;
+import model.GameData;
 import model.UserData;
 import dataaccess.DataAccessDAO;
 import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 //service tests, no http
@@ -60,6 +76,58 @@ public class ServiceTests {
         assertEquals(401, ex.statusCode());
     }
 
+    //passwords are hashed off the request thread
+    @Test
+    public void loginChecksHashOnPasswordPool() throws Exception {
+        var pool = new PasswordPool(1, 1);
+        try {
+            var svc = new UserService(new DataAccessDAO(), pool);
+            svc.register(new UserData("pat", "secret", "p@p.com"));
+            assertEquals("pat", svc.login(new UserData("pat", "secret", null)).username());
+            var ex = assertThrows(ServiceException.class, () -> svc.login(new UserData("pat", "wrong", null)));
+            assertEquals(401, ex.statusCode());
+            assertEquals(3, pool.stats().completed());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void fullPasswordPoolRefusesWith503() throws Exception {
+        var pool = new PasswordPool(1, 1);
+        var release = new CountDownLatch(1);
+        try {
+            //occupy the worker and the one queue slot
+            for (int i = 0; i < 2; i++) {
+                var t = new Thread(() -> {
+                    try {
+                        pool.run(() -> {
+                            try {
+                                return release.await(10, TimeUnit.SECONDS);
+                            } catch (InterruptedException e) {
+                                return false;
+                            }
+                        });
+                    } catch (ServiceException ignored) {
+                        //shut down below
+                    }
+                });
+                t.setDaemon(true);
+                t.start();
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (pool.stats().queued() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            var ex = assertThrows(ServiceException.class, () -> pool.hash("pw"));
+            assertEquals(503, ex.statusCode());
+            assertEquals(1, pool.stats().rejected());
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
     //create game success and fail
     @Test
     public void createGameSuccess() throws Exception {
@@ -110,4 +178,266 @@ public class ServiceTests {
         var ex = assertThrows(ServiceException.class, () -> gameSvc.list("invalid"));
         assertEquals(401, ex.statusCode());
     }
+
+    //computer opponent seats
+    @Test
+    public void botSeatPlaysAMove() throws Exception {
+        var auth = userSvc.register(new UserData("daniel", "pw", "d@d.com"));
+        int gameID = gameSvc.create(auth.authToken(), "BotGame");
+        gameSvc.join(auth.authToken(), ChessGame.TeamColor.BLACK, gameID);
+        gameSvc.joinBot(auth.authToken(), ChessGame.TeamColor.WHITE, gameID);
+
+        var position = gameSvc.botToMove(gameID);
+        assertNotNull(position);
+        var pool = new EnginePool(1, 4);
+        try {
+            pool.open(gameID, EnginePool.DEFAULT_MOVE_MILLIS);
+            var move = pool.think(gameID, position).get();
+            gameSvc.moveBot(gameID, move);
+        } finally {
+            pool.shutdown();
+        }
+        assertNull(gameSvc.botToMove(gameID));
+    }
+
+    @Test
+    public void closedBotSeatNeverSearches() throws Exception {
+        var position = new ChessGame();
+        position.getBoard().resetBoard();
+        var pool = new EnginePool(1, 4);
+        try {
+            //no seat, no search; think doesn't make one up
+            assertNull(pool.think(1, position));
+
+            pool.open(1, EnginePool.MAX_MOVE_MILLIS);
+            pool.open(2, EnginePool.MAX_MOVE_MILLIS);
+            var running = pool.think(1, position);
+            var queued = pool.think(2, position);
+            pool.close(2);
+            pool.close(1);
+
+            assertTrue(queued.isCancelled());
+            assertTrue(running.isCancelled());
+            assertFalse(pool.isOpen(1));
+            assertNull(pool.think(1, position));
+            //the worker is free again long before the 30 s budget
+            pool.open(3, 50);
+            assertNotNull(pool.think(3, position).get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void ponderNeverTouchesTheCallersGame() throws Exception {
+        var position = new ChessGame();
+        position.getBoard().resetBoard();
+        var before = new ChessGame(position);
+        var pool = new EnginePool(4, 16);
+        var failures = new ConcurrentLinkedQueue<String>();
+        var done = new CountDownLatch(1);
+        //read it the way a snapshot or a move would while the searches start
+        var reader = new Thread(() -> {
+            while (done.getCount() > 0 && failures.isEmpty()) {
+                var copy = new ChessGame(position);
+                if (!before.equals(copy)) {
+                    failures.add("saw a half-moved board");
+                }
+            }
+        });
+        reader.start();
+        try {
+            for (int i = 0; i < 200 && failures.isEmpty(); i++) {
+                int seat = i % 4;
+                pool.open(seat, EnginePool.MAX_MOVE_MILLIS);
+                pool.ponder(seat, position);
+                Thread.sleep(1);
+                pool.close(seat);
+            }
+        } finally {
+            done.countDown();
+            reader.join();
+            pool.shutdown();
+        }
+        assertTrue(failures.isEmpty(), String.valueOf(failures.peek()));
+        assertEquals(before, position);
+    }
+
+    @Test
+    public void botCannotTakeHumanSeat() throws Exception {
+        var auth = userSvc.register(new UserData("daniel", "pw", "d@d.com"));
+        int gameID = gameSvc.create(auth.authToken(), "BotGame");
+        gameSvc.join(auth.authToken(), ChessGame.TeamColor.WHITE, gameID);
+        var ex = assertThrows(ServiceException.class,
+                () -> gameSvc.joinBot(auth.authToken(), ChessGame.TeamColor.WHITE, gameID));
+        assertEquals(403, ex.statusCode());
+        assertThrows(ServiceException.class,
+                () -> userSvc.register(new UserData(GameService.BOT_USERNAME, "pw", "b@b.com")));
+    }
+
+    //websocket sessions resolve identity once
+    @Test
+    public void logoutNotifiesListenersAndSeatIsKnown() throws Exception {
+        var auth = userSvc.register(new UserData("sam", "pw", "s@s.com"));
+        int gameID = gameSvc.create(auth.authToken(), "Seats");
+        gameSvc.join(auth.authToken(), ChessGame.TeamColor.BLACK, gameID);
+        String username = gameSvc.authenticate(auth.authToken());
+        assertEquals(ChessGame.TeamColor.BLACK, gameSvc.seatOf(username, gameID));
+        assertNull(gameSvc.seatOf("someone-else", gameID));
+
+        var revoked = new ArrayList<String>();
+        userSvc.onLogout(revoked::add);
+        userSvc.logout(auth.authToken());
+        assertEquals(List.of(auth.authToken()), revoked);
+    }
+
+    @Test
+    public void connectResolvesUserGameAndSeat() throws Exception {
+        var auth = userSvc.register(new UserData("kim", "pw", "k@k.com"));
+        int gameID = gameSvc.create(auth.authToken(), "Pipelined");
+        gameSvc.join(auth.authToken(), ChessGame.TeamColor.WHITE, gameID);
+
+        var joined = gameSvc.connect(auth.authToken(), gameID);
+        assertEquals("kim", joined.username());
+        assertEquals(ChessGame.TeamColor.WHITE, joined.color());
+        assertNotNull(joined.game());
+
+        var bad = assertThrows(ServiceException.class, () -> gameSvc.connect("nope", gameID));
+        assertEquals(401, bad.statusCode());
+        var missing = assertThrows(ServiceException.class, () -> gameSvc.connect(auth.authToken(), 9999));
+        assertEquals(400, missing.statusCode());
+    }
+
+    //analysis
+    @Test
+    public void analysisIsSharedThenCached() throws Exception {
+        var db = new DataAccessDAO();
+        db.auths().insert(new AuthData("tok", "daniel"));
+        var searches = new AtomicInteger();
+        //holds every search's answer back until released, so the second request
+        //arrives while the first search is still in flight
+        var release = new CompletableFuture<Void>();
+        var pool = new EnginePool(1, 4) {
+            @Override
+            public CompletableFuture<Engine.Result> analyze(ChessGame position, Engine.Limits limits)
+                    throws ServiceException {
+                searches.incrementAndGet();
+                return super.analyze(position, limits).thenCombine(release, (r, ignored) -> r);
+            }
+        };
+        try {
+            var svc = new AnalysisService(db, pool, 16);
+            assertThrows(ServiceException.class, () -> svc.analyze("bad", null, Fen.START, 2, null));
+
+            var first = svc.analyze("tok", null, Fen.START, 3, null);
+            var second = svc.analyze("tok", null, Fen.START, 3, null);
+            assertEquals(1, searches.get());
+            assertFalse(first.isDone());
+            release.complete(null);
+            assertEquals(first.get().bestMove(), second.get().bestMove());
+            assertFalse(second.get().cached());
+
+            var third = svc.analyze("tok", null, Fen.START, 2, null).get();
+            assertTrue(third.cached());
+            assertEquals(3, third.depth());
+            assertEquals(1, searches.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void depthAnalysisIsTimeCapped() throws Exception {
+        var db = new DataAccessDAO();
+        db.auths().insert(new AuthData("tok", "daniel"));
+        var asked = new ArrayList<Engine.Limits>();
+        var e4 = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        //answers as if the time cap stopped the search after depth 2
+        var pool = new EnginePool(1, 4) {
+            @Override
+            public CompletableFuture<Engine.Result> analyze(ChessGame position, Engine.Limits limits) {
+                asked.add(limits);
+                return CompletableFuture.completedFuture(new Engine.Result(e4, 20, 2, 100, 1, List.of(e4)));
+            }
+        };
+        try {
+            var svc = new AnalysisService(db, pool, 16);
+            var partial = svc.analyze("tok", null, Fen.START, AnalysisService.MAX_DEPTH, null).get();
+            assertEquals(2, partial.depth());
+            assertEquals(AnalysisService.MAX_DEPTH, asked.get(0).maxDepth());
+            assertEquals(AnalysisService.MAX_MILLIS, asked.get(0).maxMillis());
+
+            //asking for that depth again searches again rather than trusting the partial result
+            assertFalse(svc.analyze("tok", null, Fen.START, AnalysisService.MAX_DEPTH, null).get().cached());
+            assertEquals(2, asked.size());
+            //but it did search for the full cap, so shallower or shorter requests reuse it
+            assertTrue(svc.analyze("tok", null, Fen.START, 2, null).get().cached());
+            assertTrue(svc.analyze("tok", null, Fen.START, null, AnalysisService.MAX_MILLIS).get().cached());
+            assertEquals(2, asked.size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    //concurrent writes
+    @Test
+    public void racingJoinsSeatExactlyOnePlayer() throws Exception {
+        var a = userSvc.register(new UserData("racer1", "pw", "r1@r.com"));
+        var b = userSvc.register(new UserData("racer2", "pw", "r2@r.com"));
+        for (int round = 0; round < 20; round++) {
+            int id = gameSvc.create(a.authToken(), "race" + round);
+            var start = new CountDownLatch(1);
+            var wins = new AtomicInteger();
+            //anything but a win or a 403, checked here since JUnit only sees this thread
+            var failures = new ConcurrentLinkedQueue<Throwable>();
+            var threads = new ArrayList<Thread>();
+            for (var auth : List.of(a, b)) {
+                var t = new Thread(() -> {
+                    try {
+                        start.await();
+                        gameSvc.join(auth.authToken(), ChessGame.TeamColor.WHITE, id);
+                        wins.incrementAndGet();
+                    } catch (ServiceException e) {
+                        if (e.statusCode() != 403) {
+                            failures.add(e);
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                });
+                t.start();
+                threads.add(t);
+            }
+            start.countDown();
+            for (var t : threads) {
+                t.join();
+            }
+            assertTrue(failures.isEmpty(), "unexpected failures: " + failures);
+            assertEquals(1, wins.get());
+        }
+    }
+
+    //puzzle mining
+    @Test
+    public void minerFindsScholarsMateAndCheckpoints() throws Exception {
+        var db = new DataAccessDAO();
+        var stored = db.games().create("mine");
+        var game = new ChessGame();
+        for (String move : new String[]{"a2a3", "a7a6", "h2h3", "h7h6", "e2e4", "e7e5",
+                                        "f1c4", "b8c6", "d1h5", "g8f6"}) {
+            game.makeMove(Notation.parse(move));
+            db.games().addMove(stored.gameID(), Notation.parse(move));
+        }
+        db.games().update(new GameData(stored.gameID(), null, null, "mine", game));
+
+        var stats = new PuzzleMiner(db, "test", 3, 2, 16).run();
+        assertEquals(1, stats.games());
+        var mate = db.puzzles().list().stream().filter(p -> p.mateIn() == 1).findFirst().orElseThrow();
+        assertEquals("h5f7", mate.solution());
+        assertEquals(10, mate.ply());
+        assertEquals(stored.gameID(), db.puzzles().checkpoint("test"));
+
+        //nothing new past the checkpoint
+        assertEquals(0, new PuzzleMiner(db, "test", 3, 2, 16).run().games());
+    }
 }
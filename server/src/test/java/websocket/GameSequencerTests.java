@@ -0,0 +1,67 @@
+package websocket;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameSequencerTests {
+
+    @Test
+    public void oneGameRunsInOrderWithoutOverlap() throws Exception {
+        var sequencer = new GameSequencer();
+        try {
+            List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+            var running = new AtomicInteger();
+            var overlaps = new AtomicInteger();
+            var done = new CountDownLatch(1000);
+            for (int i = 0; i < 1000; i++) {
+                int n = i;
+                assertTrue(sequencer.submit(1, () -> {
+                    if (running.incrementAndGet() > 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    order.add(n);
+                    running.decrementAndGet();
+                    done.countDown();
+                }));
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(0, overlaps.get());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, (int) order.get(i));
+            }
+        } finally {
+            sequencer.shutdown();
+        }
+    }
+
+    @Test
+    public void differentGamesRunInParallel() throws Exception {
+        var sequencer = new GameSequencer();
+        try {
+            var otherRan = new CountDownLatch(1);
+            var finished = new CountDownLatch(1);
+            //game 1 can only finish if game 2 runs while it is still busy
+            sequencer.submit(1, () -> {
+                try {
+                    if (otherRan.await(5, TimeUnit.SECONDS)) {
+                        finished.countDown();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            sequencer.submit(2, otherRan::countDown);
+            assertTrue(finished.await(10, TimeUnit.SECONDS));
+        } finally {
+            sequencer.shutdown();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package websocket;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import com.google.gson.Gson;
+import dataaccess.DataAccessDAO;
+import dataaccess.DataAccessException;
+import model.UserData;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.jupiter.api.*;
+import service.GameService;
+import service.ServiceException;
+import service.UserService;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ServerMessage;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//drives the handler through session IDs and in-memory transports, no Javalin or MySQL
+public class GameWebSocketHandlerTests {
+
+    private static final Gson GSON = new Gson();
+
+    //what one session was sent, frame by frame
+    private static class Client implements SessionOutbox.Transport {
+        final BlockingQueue<SessionOutbox.Frame> frames = new LinkedBlockingQueue<>();
+
+        @Override
+        public void send(SessionOutbox.Frame frame, WriteCallback done) {
+            frames.add(frame);
+            done.writeSuccess();
+        }
+
+        @Override
+        public void close(String reason) {
+        }
+
+        SessionOutbox.Frame nextFrame() throws InterruptedException {
+            var frame = frames.poll(5, TimeUnit.SECONDS);
+            assertNotNull(frame, "nothing sent");
+            return frame;
+        }
+
+        ServerMessage next() throws InterruptedException {
+            return GSON.fromJson(nextFrame().text(), ServerMessage.class);
+        }
+
+        //skips notifications, which these tests don't care about
+        ServerMessage nextBoard() throws InterruptedException {
+            while (true) {
+                var msg = next();
+                if (msg.getServerMessageType() != ServerMessage.ServerMessageType.NOTIFICATION) {
+                    return msg;
+                }
+            }
+        }
+    }
+
+    private DataAccessDAO db;
+    private GameWebSocketHandler handler;
+    private String whiteToken;
+    private String blackToken;
+    private int gameID;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        db = new DataAccessDAO();
+        var users = new UserService(db);
+        var games = new GameService(db);
+        whiteToken = users.register(new UserData("white", "pw", "w@w.com")).authToken();
+        blackToken = users.register(new UserData("black", "pw", "b@b.com")).authToken();
+        gameID = games.create(whiteToken, "deltas");
+        games.join(whiteToken, ChessGame.TeamColor.WHITE, gameID);
+        games.join(blackToken, ChessGame.TeamColor.BLACK, gameID);
+        //no conflation window, so every frame goes out as it is queued
+        handler = new GameWebSocketHandler(games, null, true,
+                new SessionOutbox.Limits(64, SessionOutbox.Overflow.DROP_STALE));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        handler.shutdown();
+    }
+
+    @Test
+    public void deltasAreNumberedInOrderAndResyncSendsTheBoard() throws Exception {
+        var white = connect("w", whiteToken, true);
+        var black = connect("b", blackToken, false);
+
+        var first = white.nextBoard();
+        assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, first.getServerMessageType());
+        assertEquals(0, (int) first.getSequence());
+        assertEquals(0, (int) black.nextBoard().getSequence());
+
+        move("w", whiteToken, move(2, 5, 4, 5));
+        var delta = white.nextBoard();
+        assertEquals(ServerMessage.ServerMessageType.MOVE_APPLIED, delta.getServerMessageType());
+        assertEquals(1, (int) delta.getSequence());
+        assertEquals(move(2, 5, 4, 5), delta.getMove());
+        assertEquals(gameID, (int) delta.getGameID());
+        //a client that didn't ask for deltas gets the whole board, numbered the same
+        var board = black.nextBoard();
+        assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, board.getServerMessageType());
+        assertEquals(1, (int) board.getSequence());
+
+        move("b", blackToken, move(7, 5, 5, 5));
+        //no gaps, so a client can tell a missed delta from the numbers alone
+        assertEquals(2, (int) white.nextBoard().getSequence());
+        assertEquals(2, (int) black.nextBoard().getSequence());
+
+        //after a gap the client asks again and gets the board as of the latest delta
+        handler.accept("w", new UserGameCommand(UserGameCommand.CommandType.RESYNC, whiteToken, gameID));
+        var resync = white.nextBoard();
+        assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, resync.getServerMessageType());
+        assertEquals(2, (int) resync.getSequence());
+        var expected = new ChessGame();
+        expected.makeMove(move(2, 5, 4, 5));
+        expected.makeMove(move(7, 5, 5, 5));
+        assertEquals(expected, resync.getGame());
+    }
+
+    @Test
+    public void snapshotIsEncodedOncePerPosition() throws Exception {
+        var white = connect("w", whiteToken, false);
+        var watcher = connect("o", whiteToken, false);
+        var before = white.nextFrame();
+        //the second connect at the same position reuses the cached LOAD_GAME as is
+        assertSame(before.text(), watcher.nextFrame().text());
+
+        move("w", whiteToken, move(2, 5, 4, 5));
+        var afterForWhite = nextBoardFrame(white);
+        var afterForWatcher = nextBoardFrame(watcher);
+        assertSame(afterForWhite.text(), afterForWatcher.text());
+        assertNotEquals(before.text(), afterForWhite.text());
+
+        //a resync at an unchanged position gets the same cached frame
+        handler.accept("o", new UserGameCommand(UserGameCommand.CommandType.RESYNC, whiteToken, gameID));
+        assertSame(afterForWhite.text(), nextBoardFrame(watcher).text());
+    }
+
+    @Test
+    public void closingWhileConnectingLeavesNoRoomBehind() throws Exception {
+        var entered = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        //holds CONNECT after the connection was looked up but before it joins the room
+        var slow = new GameService(db) {
+            @Override
+            public GameService.Joined connect(String authToken, int gameID) throws ServiceException, DataAccessException {
+                entered.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.connect(authToken, gameID);
+            }
+        };
+        handler.shutdown();
+        handler = new GameWebSocketHandler(slow, null, true,
+                new SessionOutbox.Limits(64, SessionOutbox.Overflow.DROP_STALE));
+
+        var client = connect("w", whiteToken, false);
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        handler.closed("w");
+        release.countDown();
+
+        //the connect undoes its own join rather than leaving a dead session in the room
+        assertNull(client.frames.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(0, handler.openRooms());
+    }
+
+    @Test
+    public void connectAtTheGameLimitMovesToTheNewGame() throws Exception {
+        var games = new GameService(db);
+        var client = new Client();
+        handler.open("w", false, client);
+        handler.accept("w", new UserGameCommand(UserGameCommand.CommandType.SUBSCRIBE, whiteToken, gameID));
+        for (int i = 1; i < 16; i++) {
+            var other = games.create(whiteToken, "watched " + i);
+            handler.accept("w", new UserGameCommand(UserGameCommand.CommandType.SUBSCRIBE, whiteToken, other));
+        }
+        for (int i = 0; i < 16; i++) {
+            assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, client.nextBoard().getServerMessageType());
+        }
+
+        var last = games.create(whiteToken, "one too many");
+        handler.accept("w", new UserGameCommand(UserGameCommand.CommandType.SUBSCRIBE, whiteToken, last));
+        assertEquals(ServerMessage.ServerMessageType.ERROR, client.nextBoard().getServerMessageType());
+
+        //CONNECT leaves one game followed, so the limit doesn't apply
+        handler.accept("w", new UserGameCommand(UserGameCommand.CommandType.CONNECT, whiteToken, last));
+        var board = client.nextBoard();
+        assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, board.getServerMessageType());
+        assertEquals(last, (int) board.getGameID());
+    }
+
+    //helpers
+    private Client connect(String sid, String token, boolean deltas) {
+        var client = new Client();
+        handler.open(sid, false, client);
+        var cmd = new UserGameCommand(UserGameCommand.CommandType.CONNECT, token, gameID);
+        cmd.setMoveDeltas(deltas);
+        handler.accept(sid, cmd);
+        return client;
+    }
+
+    private void move(String sid, String token, ChessMove move) {
+        handler.accept(sid, new UserGameCommand(UserGameCommand.CommandType.MAKE_MOVE, token, gameID, move));
+    }
+
+    private static ChessMove move(int fromRow, int fromCol, int toRow, int toCol) {
+        return new ChessMove(new ChessPosition(fromRow, fromCol), new ChessPosition(toRow, toCol), null);
+    }
+
+    private static SessionOutbox.Frame nextBoardFrame(Client client) throws InterruptedException {
+        while (true) {
+            var frame = client.nextFrame();
+            if (frame.board()) {
+                return frame;
+            }
+        }
+    }
+}
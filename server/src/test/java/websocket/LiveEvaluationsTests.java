@@ -0,0 +1,72 @@
+package websocket;
+
+import engine.Engine;
+import engine.Fen;
+import org.junit.jupiter.api.*;
+import service.EnginePool;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LiveEvaluationsTests {
+
+    private record Push(List<String> sessions, String json) {}
+
+    @Test
+    public void oneSearchFansOutToEveryWatcher() throws Exception {
+        var pushes = new CopyOnWriteArrayList<Push>();
+        var pool = new EnginePool(1, 4);
+        var evals = new LiveEvaluations(pool, (sids, json) -> pushes.add(new Push(List.copyOf(sids), json)));
+        try {
+            var start = Fen.parse(Fen.START);
+            for (int i = 0; i < 50; i++) {
+                evals.watch(7, "s" + i, start);
+            }
+            Thread.sleep(LiveEvaluations.THROTTLE_MILLIS * 4);
+
+            //every tick is one serialized update sent to all 50 watchers
+            var ticks = pushes.stream().filter(p -> p.sessions().size() == 50).toList();
+            assertFalse(ticks.isEmpty());
+            assertTrue(ticks.get(0).json().contains("EVALUATION"));
+            assertTrue(ticks.size() <= 5);
+
+            for (int i = 0; i < 50; i++) {
+                evals.unwatch(7, "s" + i);
+            }
+            assertFalse(evals.isWatching(7, "s0"));
+        } finally {
+            evals.shutdown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void busyStreamsRetryAndNeverHoldUpSearches() throws Exception {
+        var pushes = new CopyOnWriteArrayList<Push>();
+        var pool = new EnginePool(1, 4, 1);
+        var evals = new LiveEvaluations(pool, (sids, json) -> pushes.add(new Push(List.copyOf(sids), json)));
+        try {
+            var start = Fen.parse(Fen.START);
+            evals.watch(1, "a", start);
+            //the only stream thread is taken, so this one waits for the ticker
+            evals.watch(2, "b", start);
+
+            //a one-off search still gets the pool's worker straight away
+            var result = pool.analyze(start, Engine.Limits.depth(2)).get(5, TimeUnit.SECONDS);
+            assertNotNull(result.bestMove());
+
+            Thread.sleep(LiveEvaluations.THROTTLE_MILLIS * 2);
+            assertTrue(pushes.stream().noneMatch(p -> p.sessions().contains("b")));
+
+            evals.unwatch(1, "a");
+            Thread.sleep(LiveEvaluations.THROTTLE_MILLIS * 4);
+            assertTrue(pushes.stream().anyMatch(p -> p.sessions().contains("b")));
+        } finally {
+            evals.shutdown();
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package websocket;
+
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoomRegistryTests {
+
+    private static class Counter {
+        int n;
+    }
+
+    @Test
+    public void playersComeFirstAndEmptyRoomsGoAway() {
+        var rooms = new RoomRegistry<String, Counter>(Counter::new);
+        rooms.join(7, "observer 1", false);
+        rooms.join(7, "white", true);
+        rooms.join(7, "observer 2", false);
+        var room = rooms.join(7, "black", true);
+        assertEquals(List.of("white", "black", "observer 1", "observer 2"), room.members());
+
+        room.state().n = 3;
+        rooms.prioritize(7, "white", false);
+        assertEquals(List.of("black", "observer 1", "observer 2", "white"), rooms.get(7).members());
+
+        for (String s : List.of("black", "observer 1", "observer 2", "white")) {
+            assertTrue(rooms.leave(7, s));
+        }
+        assertFalse(rooms.leave(7, "white"));
+        assertNull(rooms.get(7));
+        assertEquals(0, rooms.size());
+
+        //a new room starts with fresh state
+        assertEquals(0, rooms.join(7, "again", false).state().n);
+    }
+
+    @Test
+    public void manyGamesComeAndGo() {
+        var rooms = new RoomRegistry<Integer, Counter>(Counter::new);
+        for (int id = 1; id <= 1000; id++) {
+            rooms.join(id, id, false);
+        }
+        assertEquals(1000, rooms.size());
+        for (int id = 1; id <= 1000; id += 2) {
+            rooms.leave(id, id);
+        }
+        assertEquals(500, rooms.size());
+        for (int id = 1; id <= 1000; id++) {
+            var room = rooms.get(id);
+            if (id % 2 == 0) {
+                assertEquals(List.of(id), room.members());
+            } else {
+                assertNull(room);
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package websocket;
+
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionOutboxTests {
+
+    //a client that only finishes a write when the test says so
+    private static class SlowClient implements SessionOutbox.Transport {
+        final ArrayDeque<WriteCallback> inFlight = new ArrayDeque<>();
+        final List<String> written = new ArrayList<>();
+        String closedWith;
+
+        @Override
+        public void send(SessionOutbox.Frame frame, WriteCallback done) {
+            written.add(frame.text());
+            inFlight.add(done);
+        }
+
+        @Override
+        public void close(String reason) {
+            closedWith = reason;
+        }
+
+        void finishOne() {
+            inFlight.poll().writeSuccess();
+        }
+    }
+
+    private static SessionOutbox.Frame board(String s) {
+        return SessionOutbox.Frame.text(s, true);
+    }
+
+    private static SessionOutbox.Frame note(String s) {
+        return SessionOutbox.Frame.text(s, false);
+    }
+
+    @Test
+    public void writesOneAtATimeInOrderAndReportsCompletion() {
+        var client = new SlowClient();
+        var box = new SessionOutbox(client, new SessionOutbox.Limits(8, SessionOutbox.Overflow.DISCONNECT));
+        var sent = new ArrayList<String>();
+        for (String s : List.of("a", "b", "c")) {
+            assertTrue(box.offer(note(s), new WriteCallback() {
+                @Override
+                public void writeSuccess() {
+                    sent.add(s);
+                }
+            }));
+        }
+        //the first write hasn't finished, so nothing else has started
+        assertEquals(List.of("a"), client.written);
+        assertEquals(2, box.queued());
+
+        client.finishOne();
+        client.finishOne();
+        client.finishOne();
+        assertEquals(List.of("a", "b", "c"), client.written);
+        assertEquals(List.of("a", "b", "c"), sent);
+        assertEquals(0, box.queued());
+    }
+
+    @Test
+    public void fullQueueDropsStaleBoardsThenDisconnects() {
+        var client = new SlowClient();
+        var box = new SessionOutbox(client, new SessionOutbox.Limits(3, SessionOutbox.Overflow.DROP_STALE));
+        box.offer(note("in flight"));
+        box.offer(board("board 1"));
+        box.offer(note("check"));
+        box.offer(board("board 2"));
+
+        //full: the incoming board replaces both queued ones
+        assertTrue(box.offer(board("board 3")));
+        assertEquals(2, box.dropped());
+        assertEquals(2, box.queued());
+        assertNull(client.closedWith);
+
+        //only notes and the newest board left, so another note can't fit
+        box.offer(note("x"));
+        assertFalse(box.offer(note("y")));
+        assertNotNull(client.closedWith);
+        assertFalse(box.offer(note("z")));
+
+        var disconnecting = new SlowClient();
+        var strict = new SessionOutbox(disconnecting, new SessionOutbox.Limits(1, SessionOutbox.Overflow.DISCONNECT));
+        strict.offer(board("in flight"));
+        strict.offer(board("queued"));
+        assertFalse(strict.offer(board("newer")));
+        assertNotNull(disconnecting.closedWith);
+    }
+
+    @Test
+    public void conflatingOutboxSendsOnlyTheLatestBoardPerWindow() throws Exception {
+        var client = new SlowClient() {
+            @Override
+            public void send(SessionOutbox.Frame frame, WriteCallback done) {
+                super.send(frame, done);
+                finishOne();
+            }
+        };
+        var timer = Executors.newSingleThreadScheduledExecutor();
+        try {
+            var box = new SessionOutbox(client,
+                    new SessionOutbox.Limits(16, SessionOutbox.Overflow.DROP_STALE, 20), timer);
+            box.conflate(true);
+            box.offer(board("board 1"));
+            box.offer(note("moved"));
+            box.offer(board("board 2"));
+            box.offer(board("board 3"));
+            assertTrue(client.written.isEmpty());
+
+            Thread.sleep(200);
+            assertEquals(List.of("moved", "board 3"), client.written);
+            assertEquals(2, box.dropped());
+
+            //a player's outbox sends straight away
+            box.conflate(false);
+            box.offer(board("board 4"));
+            assertEquals("board 4", client.written.get(client.written.size() - 1));
+        } finally {
+            timer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void boardsOnlyReplaceBoardsOfTheSameGame() throws Exception {
+        var client = new SlowClient() {
+            @Override
+            public void send(SessionOutbox.Frame frame, WriteCallback done) {
+                super.send(frame, done);
+                finishOne();
+            }
+        };
+        var timer = Executors.newSingleThreadScheduledExecutor();
+        try {
+            var box = new SessionOutbox(client,
+                    new SessionOutbox.Limits(16, SessionOutbox.Overflow.DROP_STALE, 20), timer);
+            box.conflate(true);
+            box.offer(SessionOutbox.Frame.text("game 1 board 1", true, 1));
+            box.offer(SessionOutbox.Frame.text("game 2 board 1", true, 2));
+            box.offer(SessionOutbox.Frame.text("game 1 board 2", true, 1));
+
+            Thread.sleep(200);
+            assertEquals(List.of("game 2 board 1", "game 1 board 2"), client.written);
+            assertEquals(1, box.dropped());
+        } finally {
+            timer.shutdownNow();
+        }
+    }
+}
@@ -13,6 +13,17 @@ public class ChessBoard {
         
     }
 
+    /**
+     * Copies another board. Pieces are immutable, so only the grid is duplicated.
+     *
+     * @param other the board to copy
+     */
+    public ChessBoard(ChessBoard other) {
+        for (int r = 0; r < 8; r++) {
+            squares[r] = other.squares[r].clone();
+        }
+    }
+
     /**
      * Adds a chess piece to the chessboard
      *
@@ -19,6 +19,16 @@ public class ChessGame {
 
     }
 
+    /**
+     * Copies another game so it can be explored without touching the original
+     *
+     * @param other the game to copy
+     */
+    public ChessGame(ChessGame other) {
+        this.board = new ChessBoard(other.board);
+        this.teamTurn = other.teamTurn;
+    }
+
     /**
      * @return Which team's turn it is
      */
@@ -0,0 +1,419 @@
+package engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A small alpha-beta engine on top of {@link ChessGame}.
+ * <p>
+ * Iterative deepening negamax with a Zobrist-keyed transposition table,
+ * capture-only quiescence and exact endgame scores from a {@link Tablebase}
+ * when one is supplied. Scores are in centipawns from the side to move's point
+ * of view; mates are reported as {@code MATE - plies}.
+ * <p>
+ * An engine keeps its own table between searches and is not thread-safe; use
+ * one instance per thread. {@link #stop()} may be called from any thread.
+ */
+public final class Engine {
+
+    public static final int MATE = 100_000;
+    public static final int MAX_DEPTH = 64;
+
+    private static final int INFINITY = MATE + 1;
+    private static final int MATE_BOUND = MATE - 1_000;
+    private static final int QUIESCENCE_DEPTH = 6;
+
+    // indexed by PieceType ordinal: KING, QUEEN, BISHOP, KNIGHT, ROOK, PAWN
+    private static final int[] VALUE = {0, 900, 330, 320, 500, 100};
+
+    private static final int EXACT = 0;
+    private static final int LOWER = 1;
+    private static final int UPPER = 2;
+
+    /**
+     * How long to search: stop after {@code maxDepth} plies or
+     * {@code maxMillis} milliseconds, whichever comes first (0 means no limit).
+     */
+    public record Limits(int maxDepth, long maxMillis) {
+        public static Limits depth(int depth) {
+            return new Limits(depth, 0);
+        }
+
+        public static Limits millis(long millis) {
+            return new Limits(MAX_DEPTH, millis);
+        }
+    }
+
+    /**
+     * The outcome of the deepest completed iteration.
+     */
+    public record Result(ChessMove bestMove, int score, int depth, long nodes, long elapsedNanos,
+                         List<ChessMove> pv) {
+        public long nodesPerSecond() {
+            return elapsedNanos == 0 ? nodes : nodes * 1_000_000_000L / elapsedNanos;
+        }
+
+        public boolean isMate() {
+            return Math.abs(score) >= MATE_BOUND;
+        }
+
+        /**
+         * @return moves until mate, negative when the side to move is getting
+         * mated, or 0 if the score is not a mate
+         */
+        public int mateIn() {
+            if (!isMate()) {
+                return 0;
+            }
+            int plies = MATE - Math.abs(score);
+            return score > 0 ? (plies + 1) / 2 : -(plies / 2);
+        }
+    }
+
+    private final Tablebase tablebase;
+    private final long[] keys;
+    private final long[] entries;
+    private final int mask;
+
+    private volatile boolean stopRequested;
+    private long nodes;
+    private long deadline;
+
+    public Engine() {
+        this(null, 1 << 16);
+    }
+
+    /**
+     * @param tablebase   endgame tables to probe, or null
+     * @param hashEntries transposition table size, rounded up to a power of two
+     */
+    public Engine(Tablebase tablebase, int hashEntries) {
+        int size = Integer.highestOneBit(Math.max(1, hashEntries - 1)) << 1;
+        this.tablebase = tablebase;
+        this.keys = new long[size];
+        this.entries = new long[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Searches the position. The game itself is never modified.
+     *
+     * @return the best line found, with a null move if the side to move has none
+     */
+    public Result search(ChessGame game, Limits limits) {
+        return search(game, limits, null);
+    }
+
+    /**
+     * Same as {@link #search(ChessGame, Limits)}, reporting the result of each
+     * completed iteration to {@code onIteration} as the search deepens.
+     */
+    public Result search(ChessGame game, Limits limits, Consumer<Result> onIteration) {
+        long start = System.nanoTime();
+        stopRequested = false;
+        nodes = 0;
+        deadline = limits.maxMillis() > 0 ? start + limits.maxMillis() * 1_000_000L : Long.MAX_VALUE;
+
+        List<ChessMove> rootMoves = Moves.legal(game);
+        if (rootMoves.isEmpty()) {
+            int score = game.isInCheck(game.getTeamTurn()) ? -MATE : 0;
+            return new Result(null, score, 0, 1, System.nanoTime() - start, List.of());
+        }
+
+        ChessMove best = rootMoves.get(0);
+        int bestScore = 0;
+        int completed = 0;
+        int maxDepth = Math.max(1, Math.min(MAX_DEPTH, limits.maxDepth()));
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            order(game, rootMoves, Moves.pack(best));
+            int alpha = -INFINITY;
+            ChessMove iterationBest = null;
+            for (ChessMove move : rootMoves) {
+                int score = -negamax(Moves.play(game, move), depth - 1, -INFINITY, -alpha, 1);
+                if (stopRequested) {
+                    break;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    iterationBest = move;
+                }
+            }
+            if (stopRequested) {
+                break;
+            }
+            best = iterationBest;
+            bestScore = alpha;
+            completed = depth;
+            store(Zobrist.key(game), depth, EXACT, alpha, Moves.pack(best));
+            if (onIteration != null) {
+                onIteration.accept(new Result(best, bestScore, completed, nodes, System.nanoTime() - start,
+                        principalVariation(game, best)));
+            }
+            if (Math.abs(alpha) >= MATE_BOUND) {
+                break;
+            }
+        }
+        return new Result(best, bestScore, completed, nodes, System.nanoTime() - start,
+                principalVariation(game, best));
+    }
+
+    /**
+     * Asks a running search to return as soon as possible. Interrupting the
+     * searching thread has the same effect.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * Static evaluation in centipawns for the side to move.
+     */
+    public static int evaluate(ChessGame game) {
+        int white = 0;
+        int black = 0;
+        int whiteMaterial = 0;
+        int blackMaterial = 0;
+        int whiteKing = -1;
+        int blackKing = -1;
+        for (int r = 1; r <= 8; r++) {
+            for (int c = 1; c <= 8; c++) {
+                ChessPiece p = game.getBoard().getPiece(new ChessPosition(r, c));
+                if (p == null) {
+                    continue;
+                }
+                boolean isWhite = p.getTeamColor() == ChessGame.TeamColor.WHITE;
+                int advance = isWhite ? r - 1 : 8 - r;
+                int center = 6 - centerDistance(r, c);
+                int score = VALUE[p.getPieceType().ordinal()] + switch (p.getPieceType()) {
+                    case PAWN -> advance * advance * 2 + (c == 4 || c == 5 ? advance * 6 : 0);
+                    case KNIGHT -> center * 5;
+                    case BISHOP -> center * 3;
+                    case QUEEN -> center;
+                    case ROOK -> advance == 6 ? 15 : 0;
+                    case KING -> 0;
+                };
+                if (p.getPieceType() == ChessPiece.PieceType.KING) {
+                    if (isWhite) {
+                        whiteKing = Material.square(r, c);
+                    } else {
+                        blackKing = Material.square(r, c);
+                    }
+                } else if (p.getPieceType() != ChessPiece.PieceType.PAWN) {
+                    if (isWhite) {
+                        whiteMaterial += VALUE[p.getPieceType().ordinal()];
+                    } else {
+                        blackMaterial += VALUE[p.getPieceType().ordinal()];
+                    }
+                }
+                if (isWhite) {
+                    white += score;
+                } else {
+                    black += score;
+                }
+            }
+        }
+        white += kingScore(whiteKing, blackMaterial);
+        black += kingScore(blackKing, whiteMaterial);
+        int eval = white - black;
+        return game.getTeamTurn() == ChessGame.TeamColor.WHITE ? eval : -eval;
+    }
+
+    // tuck the king away in the middlegame, bring it to the centre once the opponent's pieces are gone
+    private static int kingScore(int square, int opponentMaterial) {
+        if (square < 0) {
+            return 0;
+        }
+        int distance = centerDistance(Material.row(square), Material.col(square));
+        return opponentMaterial <= 1300 ? (6 - distance) * 8 : distance * 4;
+    }
+
+    private static int centerDistance(int row, int col) {
+        return Math.max(Math.abs(2 * row - 9), Math.abs(2 * col - 9)) / 2 + Math.min(Math.abs(2 * row - 9),
+                Math.abs(2 * col - 9)) / 2;
+    }
+
+    private int negamax(ChessGame game, int depth, int alpha, int beta, int ply) {
+        nodes++;
+        if ((nodes & 255) == 0 && (System.nanoTime() > deadline || Thread.currentThread().isInterrupted())) {
+            stopRequested = true;
+        }
+        if (stopRequested) {
+            return 0;
+        }
+        if (tablebase != null) {
+            var probe = tablebase.probe(game);
+            if (probe != null) {
+                return switch (probe.outcome()) {
+                    case WIN -> MATE - ply - probe.pliesToMate();
+                    case LOSS -> -MATE + ply + probe.pliesToMate();
+                    case DRAW -> 0;
+                };
+            }
+        }
+
+        long key = Zobrist.key(game);
+        int slot = (int) key & mask;
+        int ttMove = 0;
+        if (keys[slot] == key) {
+            long entry = entries[slot];
+            ttMove = (int) (entry & 0xFFFF);
+            if (entryDepth(entry) >= depth) {
+                int score = fromTable(entryScore(entry), ply);
+                int flag = entryFlag(entry);
+                if (flag == EXACT
+                        || (flag == LOWER && score >= beta)
+                        || (flag == UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        if (depth <= 0) {
+            return quiesce(game, alpha, beta, QUIESCENCE_DEPTH);
+        }
+
+        List<ChessMove> moves = Moves.legal(game);
+        if (moves.isEmpty()) {
+            return game.isInCheck(game.getTeamTurn()) ? -MATE + ply : 0;
+        }
+        order(game, moves, ttMove);
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        ChessMove bestMove = null;
+        for (ChessMove move : moves) {
+            int score = -negamax(Moves.play(game, move), depth - 1, -beta, -alpha, ply + 1);
+            if (stopRequested) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = move;
+            }
+            if (score > alpha) {
+                alpha = score;
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+        int flag = best <= originalAlpha ? UPPER : best >= beta ? LOWER : EXACT;
+        store(key, depth, flag, toTable(best, ply), Moves.pack(bestMove));
+        return best;
+    }
+
+    private int quiesce(ChessGame game, int alpha, int beta, int depth) {
+        nodes++;
+        int standPat = evaluate(game);
+        if (standPat >= beta || depth == 0) {
+            return standPat;
+        }
+        alpha = Math.max(alpha, standPat);
+        List<ChessMove> captures = new ArrayList<>();
+        for (ChessMove move : Moves.legal(game)) {
+            if (game.getBoard().getPiece(move.getEndPosition()) != null || move.getPromotionPiece() != null) {
+                captures.add(move);
+            }
+        }
+        order(game, captures, 0);
+        for (ChessMove move : captures) {
+            int score = -quiesce(Moves.play(game, move), -beta, -alpha, depth - 1);
+            if (score >= beta) {
+                return score;
+            }
+            alpha = Math.max(alpha, score);
+        }
+        return alpha;
+    }
+
+    // hash move first, then captures by most valuable victim / least valuable attacker
+    private static void order(ChessGame game, List<ChessMove> moves, int hashMove) {
+        var board = game.getBoard();
+        moves.sort(Comparator.comparingInt((ChessMove m) -> {
+            if (Moves.pack(m) == hashMove) {
+                return Integer.MIN_VALUE;
+            }
+            ChessPiece victim = board.getPiece(m.getEndPosition());
+            int gain = (victim == null) ? 0 : 10 * VALUE[victim.getPieceType().ordinal()]
+                    - VALUE[board.getPiece(m.getStartPosition()).getPieceType().ordinal()];
+            if (m.getPromotionPiece() != null) {
+                gain += VALUE[m.getPromotionPiece().ordinal()];
+            }
+            return -gain;
+        }));
+    }
+
+    private List<ChessMove> principalVariation(ChessGame game, ChessMove first) {
+        List<ChessMove> pv = new ArrayList<>();
+        if (first == null) {
+            return pv;
+        }
+        pv.add(first);
+        ChessGame position = Moves.play(game, first);
+        while (pv.size() < MAX_DEPTH) {
+            long key = Zobrist.key(position);
+            int slot = (int) key & mask;
+            if (keys[slot] != key || (entries[slot] & 0xFFFF) == 0) {
+                break;
+            }
+            ChessMove next = Moves.unpack((int) (entries[slot] & 0xFFFF));
+            if (!Moves.legal(position).contains(next)) {
+                break;
+            }
+            pv.add(next);
+            position = Moves.play(position, next);
+        }
+        return pv;
+    }
+
+    // entry layout: move in bits 0-15, flag 16-17, depth 18-25, score in the high 32 bits
+    private void store(long key, int depth, int flag, int score, int move) {
+        int slot = (int) key & mask;
+        if (keys[slot] == key && entryDepth(entries[slot]) > depth) {
+            return;
+        }
+        keys[slot] = key;
+        entries[slot] = (move & 0xFFFFL) | ((long) flag << 16) | ((long) Math.min(depth, 255) << 18)
+                | ((long) score << 32);
+    }
+
+    private static int entryDepth(long entry) {
+        return (int) ((entry >>> 18) & 0xFF);
+    }
+
+    private static int entryFlag(long entry) {
+        return (int) ((entry >>> 16) & 3);
+    }
+
+    private static int entryScore(long entry) {
+        return (int) (entry >> 32);
+    }
+
+    // mate scores are stored relative to the node so they stay valid at any depth
+    private static int toTable(int score, int ply) {
+        if (score >= MATE_BOUND) {
+            return score + ply;
+        }
+        if (score <= -MATE_BOUND) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE_BOUND) {
+            return score - ply;
+        }
+        if (score <= -MATE_BOUND) {
+            return score + ply;
+        }
+        return score;
+    }
+}
@@ -0,0 +1,111 @@
+package engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation.
+ * <p>
+ * {@link ChessGame} has no castling, en passant or move counters, so those
+ * fields are accepted but ignored when parsing, and written as
+ * {@code "- - 0 1"}.
+ */
+public final class Fen {
+
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1";
+
+    private Fen() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the text is not a FEN position
+     */
+    public static ChessGame parse(String fen) {
+        if (fen == null || fen.isBlank()) {
+            throw new IllegalArgumentException("empty FEN");
+        }
+        String[] fields = fen.trim().split("\\s+");
+        String[] ranks = fields[0].split("/");
+        if (ranks.length != 8) {
+            throw new IllegalArgumentException("FEN needs 8 ranks: " + fen);
+        }
+        var board = new ChessBoard();
+        for (int i = 0; i < 8; i++) {
+            int row = 8 - i;
+            int col = 1;
+            for (char ch : ranks[i].toCharArray()) {
+                if (Character.isDigit(ch)) {
+                    col += ch - '0';
+                } else {
+                    if (col > 8) {
+                        throw new IllegalArgumentException("rank too long: " + ranks[i]);
+                    }
+                    board.addPiece(new ChessPosition(row, col++), piece(ch));
+                }
+            }
+            if (col != 9) {
+                throw new IllegalArgumentException("rank has wrong width: " + ranks[i]);
+            }
+        }
+        var game = new ChessGame();
+        game.setBoard(board);
+        if (fields.length > 1) {
+            game.setTeamTurn(switch (fields[1]) {
+                case "w" -> ChessGame.TeamColor.WHITE;
+                case "b" -> ChessGame.TeamColor.BLACK;
+                default -> throw new IllegalArgumentException("bad side to move: " + fields[1]);
+            });
+        } else {
+            game.setTeamTurn(ChessGame.TeamColor.WHITE);
+        }
+        return game;
+    }
+
+    public static String format(ChessGame game) {
+        var sb = new StringBuilder();
+        for (int row = 8; row >= 1; row--) {
+            int empty = 0;
+            for (int col = 1; col <= 8; col++) {
+                ChessPiece p = game.getBoard().getPiece(new ChessPosition(row, col));
+                if (p == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    sb.append(empty);
+                    empty = 0;
+                }
+                sb.append(letter(p));
+            }
+            if (empty > 0) {
+                sb.append(empty);
+            }
+            if (row > 1) {
+                sb.append('/');
+            }
+        }
+        sb.append(game.getTeamTurn() == ChessGame.TeamColor.WHITE ? " w" : " b");
+        return sb.append(" - - 0 1").toString();
+    }
+
+    private static ChessPiece piece(char ch) {
+        var color = Character.isUpperCase(ch) ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        var type = switch (Character.toUpperCase(ch)) {
+            case 'K' -> ChessPiece.PieceType.KING;
+            case 'Q' -> ChessPiece.PieceType.QUEEN;
+            case 'R' -> ChessPiece.PieceType.ROOK;
+            case 'B' -> ChessPiece.PieceType.BISHOP;
+            case 'N' -> ChessPiece.PieceType.KNIGHT;
+            case 'P' -> ChessPiece.PieceType.PAWN;
+            default -> throw new IllegalArgumentException("bad piece in FEN: " + ch);
+        };
+        return new ChessPiece(color, type);
+    }
+
+    private static char letter(ChessPiece p) {
+        char ch = Material.letterOf(p.getPieceType());
+        return p.getTeamColor() == ChessGame.TeamColor.WHITE ? ch : Character.toLowerCase(ch);
+    }
+}
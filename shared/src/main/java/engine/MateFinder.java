@@ -0,0 +1,245 @@
+package engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Proves or refutes "the side to move mates within N moves" with proof-number
+ * search.
+ * <p>
+ * Unlike alpha-beta, proof-number search only grows the part of the tree where
+ * the fewest positions are left to prove (or disprove), which makes long
+ * forcing lines such as checks and narrow king walks cheap to find. The tree is
+ * held in a node table with a fixed capacity; refuted subtrees are dropped as
+ * soon as they are decided, and if the table fills up the search gives up
+ * rather than growing without bound.
+ */
+public final class MateFinder {
+
+    // rough heap cost of one Node, used to turn a memory budget into a node count
+    private static final int BYTES_PER_NODE = 64;
+    private static final int INFINITY = Integer.MAX_VALUE / 4;
+
+    public enum Status {
+        /** a forced mate was found; see {@link Result#line()} */
+        MATE,
+        /** there is no forced mate within the requested number of moves */
+        NO_MATE,
+        /** the node table filled up before the search finished */
+        GAVE_UP
+    }
+
+    /**
+     * @param status what the search proved
+     * @param line   the mating line (attacker moves and best defences), empty
+     *               unless the status is {@link Status#MATE}
+     * @param nodes  nodes created while searching
+     */
+    public record Result(Status status, List<ChessMove> line, long nodes) {
+        public int movesToMate() {
+            return (line.size() + 1) / 2;
+        }
+    }
+
+    private final int maxNodes;
+
+    /**
+     * @param maxNodes size of the node table; the search gives up once this
+     *                 many nodes are alive at the same time
+     */
+    public MateFinder(int maxNodes) {
+        if (maxNodes < 1) {
+            throw new IllegalArgumentException("maxNodes must be positive");
+        }
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Sizes the node table to fit in roughly the given number of bytes.
+     */
+    public static MateFinder withMemoryLimit(long bytes) {
+        return new MateFinder((int) Math.max(1, Math.min(Integer.MAX_VALUE, bytes / BYTES_PER_NODE)));
+    }
+
+    /**
+     * Searches for a mate by the side to move in at most {@code maxMoves} of its
+     * own moves.
+     */
+    public Result find(ChessGame game, int maxMoves) {
+        if (maxMoves < 1) {
+            throw new IllegalArgumentException("maxMoves must be at least 1");
+        }
+        var search = new Search(maxMoves * 2 - 1);
+        Node root = search.create(null, null, game, 0);
+        while (root.proof != 0 && root.disproof != 0) {
+            if (search.alive >= maxNodes) {
+                return new Result(Status.GAVE_UP, List.of(), search.created);
+            }
+            ChessGame position = game;
+            Node node = root;
+            while (node.children != null) {
+                node = mostProving(node);
+                position = Moves.play(position, node.move);
+            }
+            search.expand(node, position);
+            search.update(node);
+        }
+        if (root.disproof == 0) {
+            return new Result(Status.NO_MATE, List.of(), search.created);
+        }
+        List<ChessMove> line = new ArrayList<>();
+        principalLine(root, line);
+        return new Result(Status.MATE, List.copyOf(line), search.created);
+    }
+
+    private static Node mostProving(Node node) {
+        Node best = null;
+        for (Node child : node.children) {
+            if (best == null || (node.attacker ? child.proof < best.proof : child.disproof < best.disproof)) {
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    // attacker takes the quickest proved mate, defender the longest resistance
+    private static void principalLine(Node node, List<ChessMove> out) {
+        while (node.children != null && node.children.length > 0) {
+            Node next = null;
+            int nextLength = 0;
+            for (Node child : node.children) {
+                if (child.proof != 0) {
+                    continue;
+                }
+                int length = mateLength(child);
+                if (next == null || (node.attacker ? length < nextLength : length > nextLength)) {
+                    next = child;
+                    nextLength = length;
+                }
+            }
+            out.add(next.move);
+            node = next;
+        }
+    }
+
+    private static int mateLength(Node node) {
+        if (node.children == null || node.children.length == 0) {
+            return 0;
+        }
+        int best = node.attacker ? INFINITY : 0;
+        for (Node child : node.children) {
+            if (child.proof != 0) {
+                continue;
+            }
+            int length = 1 + mateLength(child);
+            best = node.attacker ? Math.min(best, length) : Math.max(best, length);
+        }
+        return best;
+    }
+
+    private static final class Node {
+        final ChessMove move;
+        final Node parent;
+        final boolean attacker;
+        final int ply;
+        Node[] children;
+        int proof;
+        int disproof;
+
+        Node(ChessMove move, Node parent, boolean attacker, int ply) {
+            this.move = move;
+            this.parent = parent;
+            this.attacker = attacker;
+            this.ply = ply;
+        }
+    }
+
+    private static final class Search {
+        private final int maxPly;
+        int alive;
+        long created;
+
+        Search(int maxPly) {
+            this.maxPly = maxPly;
+        }
+
+        // creates a node and scores it straight away from its own legal moves
+        Node create(ChessMove move, Node parent, ChessGame position, int ply) {
+            boolean attacker = ply % 2 == 0;
+            var node = new Node(move, parent, attacker, ply);
+            alive++;
+            created++;
+            int mobility = Moves.legal(position).size();
+            if (mobility == 0) {
+                boolean mated = position.isInCheck(position.getTeamTurn());
+                boolean attackerWins = mated && !attacker;
+                node.proof = attackerWins ? 0 : INFINITY;
+                node.disproof = attackerWins ? INFINITY : 0;
+                node.children = new Node[0];
+            } else if (ply >= maxPly) {
+                node.proof = INFINITY;
+                node.disproof = 0;
+            } else if (attacker) {
+                node.proof = 1;
+                node.disproof = mobility;
+            } else {
+                node.proof = mobility;
+                node.disproof = 1;
+            }
+            return node;
+        }
+
+        void expand(Node node, ChessGame position) {
+            List<ChessMove> moves = Moves.legal(position);
+            var children = new Node[moves.size()];
+            for (int i = 0; i < children.length; i++) {
+                var move = moves.get(i);
+                children[i] = create(move, node, Moves.play(position, move), node.ply + 1);
+            }
+            node.children = children;
+        }
+
+        // recomputes numbers up to the root, dropping subtrees that are now decided
+        void update(Node node) {
+            while (node != null) {
+                int proof;
+                int disproof;
+                if (node.attacker) {
+                    proof = INFINITY;
+                    disproof = 0;
+                    for (Node child : node.children) {
+                        proof = Math.min(proof, child.proof);
+                        disproof = Math.min(INFINITY, disproof + child.disproof);
+                    }
+                } else {
+                    proof = 0;
+                    disproof = INFINITY;
+                    for (Node child : node.children) {
+                        proof = Math.min(INFINITY, proof + child.proof);
+                        disproof = Math.min(disproof, child.disproof);
+                    }
+                }
+                node.proof = proof;
+                node.disproof = disproof;
+                if (disproof == 0 && node.children.length > 0) {
+                    alive -= count(node) - 1;
+                    node.children = new Node[0];
+                }
+                node = node.parent;
+            }
+        }
+
+        private static int count(Node node) {
+            int n = 1;
+            if (node.children != null) {
+                for (Node child : node.children) {
+                    n += count(child);
+                }
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package engine;
+
+import chess.ChessGame;
+import chess.ChessPiece;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A material signature such as "KQK" or "KBNK" (white pieces first, then black)
+ * together with the fixed piece order used to index positions of that material.
+ * <p>
+ * Slot 0 is always the white king, slot 1 the black king, followed by white and
+ * then black extras in Q, R, B, N, P order. A position index is
+ * {@code ((stm * 64 + sq0) * 64 + sq1) * 64 ...} where squares run 0..63 as
+ * {@code (row - 1) * 8 + (col - 1)}.
+ */
+final class Material {
+
+    private static final String ORDER = "KQRBNP";
+
+    private final String signature;
+    private final ChessPiece[] pieces;
+
+    private Material(String signature, ChessPiece[] pieces) {
+        this.signature = signature;
+        this.pieces = pieces;
+    }
+
+    static Material parse(String signature) {
+        int split = signature.indexOf('K', 1);
+        if (!signature.startsWith("K") || split < 0) {
+            throw new IllegalArgumentException("bad material signature: " + signature);
+        }
+        String white = sortExtras(signature.substring(0, split));
+        String black = sortExtras(signature.substring(split));
+
+        List<ChessPiece> list = new ArrayList<>();
+        list.add(new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        list.add(new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        for (char ch : white.substring(1).toCharArray()) {
+            list.add(new ChessPiece(ChessGame.TeamColor.WHITE, typeOf(ch)));
+        }
+        for (char ch : black.substring(1).toCharArray()) {
+            list.add(new ChessPiece(ChessGame.TeamColor.BLACK, typeOf(ch)));
+        }
+        return new Material(white + black, list.toArray(new ChessPiece[0]));
+    }
+
+    /**
+     * Builds the canonical signature for an arbitrary list of pieces.
+     */
+    static String signatureOf(List<ChessPiece> onBoard) {
+        StringBuilder white = new StringBuilder();
+        StringBuilder black = new StringBuilder();
+        for (ChessPiece p : onBoard) {
+            (p.getTeamColor() == ChessGame.TeamColor.WHITE ? white : black).append(letterOf(p.getPieceType()));
+        }
+        return sortExtras(white.toString()) + sortExtras(black.toString());
+    }
+
+    /**
+     * @return the same material with colors swapped, e.g. "KKQ" for "KQK"
+     */
+    static String flip(String signature) {
+        int split = signature.indexOf('K', 1);
+        return signature.substring(split) + signature.substring(0, split);
+    }
+
+    /**
+     * Positions with only kings and at most one minor piece can never be won.
+     */
+    static boolean insufficient(String signature) {
+        String extras = signature.replace("K", "");
+        return extras.isEmpty() || extras.equals("B") || extras.equals("N");
+    }
+
+    String signature() {
+        return signature;
+    }
+
+    int pieceCount() {
+        return pieces.length;
+    }
+
+    ChessPiece piece(int slot) {
+        return pieces[slot];
+    }
+
+    long size() {
+        return 2L << (6 * pieces.length);
+    }
+
+    long index(ChessGame.TeamColor toMove, int[] squares) {
+        long idx = toMove.ordinal();
+        for (int sq : squares) {
+            idx = (idx << 6) | sq;
+        }
+        return idx;
+    }
+
+    ChessGame.TeamColor sideToMove(long index) {
+        return ChessGame.TeamColor.values()[(int) (index >>> (6 * pieces.length))];
+    }
+
+    void squares(long index, int[] out) {
+        for (int slot = pieces.length - 1; slot >= 0; slot--) {
+            out[slot] = (int) (index & 63);
+            index >>>= 6;
+        }
+    }
+
+    /**
+     * Maps pieces found on a board to slots of this material.
+     *
+     * @return squares in slot order, or null if the pieces do not match
+     */
+    int[] assign(List<ChessPiece> onBoard, List<Integer> boardSquares) {
+        int[] squares = new int[pieces.length];
+        boolean[] used = new boolean[onBoard.size()];
+        for (int slot = 0; slot < pieces.length; slot++) {
+            int found = -1;
+            for (int i = 0; i < onBoard.size() && found < 0; i++) {
+                if (!used[i] && onBoard.get(i).equals(pieces[slot])) {
+                    found = i;
+                }
+            }
+            if (found < 0) {
+                return null;
+            }
+            used[found] = true;
+            squares[slot] = boardSquares.get(found);
+        }
+        return squares;
+    }
+
+    static int square(int row, int col) {
+        return (row - 1) * 8 + (col - 1);
+    }
+
+    static int row(int square) {
+        return square / 8 + 1;
+    }
+
+    static int col(int square) {
+        return square % 8 + 1;
+    }
+
+    private static String sortExtras(String side) {
+        char[] extras = side.replace("K", "").toCharArray();
+        StringBuilder sb = new StringBuilder("K");
+        for (char want : ORDER.substring(1).toCharArray()) {
+            for (char ch : extras) {
+                if (ch == want) {
+                    sb.append(ch);
+                }
+            }
+        }
+        if (sb.length() != side.length()) {
+            throw new IllegalArgumentException("bad material: " + side);
+        }
+        return sb.toString();
+    }
+
+    private static ChessPiece.PieceType typeOf(char letter) {
+        return switch (letter) {
+            case 'K' -> ChessPiece.PieceType.KING;
+            case 'Q' -> ChessPiece.PieceType.QUEEN;
+            case 'R' -> ChessPiece.PieceType.ROOK;
+            case 'B' -> ChessPiece.PieceType.BISHOP;
+            case 'N' -> ChessPiece.PieceType.KNIGHT;
+            case 'P' -> ChessPiece.PieceType.PAWN;
+            default -> throw new IllegalArgumentException("bad piece letter: " + letter);
+        };
+    }
+
+    static char letterOf(ChessPiece.PieceType type) {
+        return switch (type) {
+            case KING -> 'K';
+            case QUEEN -> 'Q';
+            case ROOK -> 'R';
+            case BISHOP -> 'B';
+            case KNIGHT -> 'N';
+            case PAWN -> 'P';
+        };
+    }
+}
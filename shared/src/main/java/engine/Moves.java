@@ -0,0 +1,78 @@
+package engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Move helpers shared by the engine classes, built on {@link ChessGame}.
+ */
+final class Moves {
+
+    private Moves() {
+    }
+
+    /**
+     * @return every legal move for the side to move
+     */
+    static List<ChessMove> legal(ChessGame game) {
+        List<ChessMove> moves = new ArrayList<>();
+        for (int r = 1; r <= 8; r++) {
+            for (int c = 1; c <= 8; c++) {
+                var from = new ChessPosition(r, c);
+                ChessPiece p = game.getBoard().getPiece(from);
+                if (p != null && p.getTeamColor() == game.getTeamTurn()) {
+                    moves.addAll(game.validMoves(from));
+                }
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Plays a move already known to be legal on a copy of the game, skipping
+     * the validation {@link ChessGame#makeMove} would repeat.
+     */
+    static ChessGame play(ChessGame game, ChessMove move) {
+        var next = new ChessGame(game);
+        var board = next.getBoard();
+        ChessPiece moving = board.getPiece(move.getStartPosition());
+        ChessPiece placed = (move.getPromotionPiece() != null)
+                ? new ChessPiece(moving.getTeamColor(), move.getPromotionPiece())
+                : moving;
+        board.addPiece(move.getEndPosition(), placed);
+        board.addPiece(move.getStartPosition(), null);
+        next.setTeamTurn(opposite(game.getTeamTurn()));
+        return next;
+    }
+
+    /**
+     * Packs a move into 15 bits: from square, to square and promotion piece.
+     */
+    static int pack(ChessMove move) {
+        var from = move.getStartPosition();
+        var to = move.getEndPosition();
+        int promo = (move.getPromotionPiece() == null) ? 0 : move.getPromotionPiece().ordinal() + 1;
+        return Material.square(from.getRow(), from.getColumn())
+                | Material.square(to.getRow(), to.getColumn()) << 6
+                | promo << 12;
+    }
+
+    static ChessMove unpack(int packed) {
+        int from = packed & 63;
+        int to = (packed >>> 6) & 63;
+        int promo = (packed >>> 12) & 7;
+        return new ChessMove(
+                new ChessPosition(Material.row(from), Material.col(from)),
+                new ChessPosition(Material.row(to), Material.col(to)),
+                promo == 0 ? null : ChessPiece.PieceType.values()[promo - 1]);
+    }
+
+    static ChessGame.TeamColor opposite(ChessGame.TeamColor c) {
+        return (c == ChessGame.TeamColor.WHITE) ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+}
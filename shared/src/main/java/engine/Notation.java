@@ -0,0 +1,64 @@
+package engine;
+
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Coordinate notation for moves, e.g. {@code e2e4} or {@code e7e8q}.
+ */
+public final class Notation {
+
+    private Notation() {
+    }
+
+    public static String of(ChessMove move) {
+        var sb = new StringBuilder(5)
+                .append(square(move.getStartPosition()))
+                .append(square(move.getEndPosition()));
+        if (move.getPromotionPiece() != null) {
+            sb.append(Character.toLowerCase(Material.letterOf(move.getPromotionPiece())));
+        }
+        return sb.toString();
+    }
+
+    public static List<String> of(List<ChessMove> moves) {
+        return moves.stream().map(Notation::of).collect(Collectors.toList());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the text is not a coordinate move
+     */
+    public static ChessMove parse(String text) {
+        if (text == null || (text.length() != 4 && text.length() != 5)) {
+            throw new IllegalArgumentException("bad move: " + text);
+        }
+        ChessPiece.PieceType promotion = null;
+        if (text.length() == 5) {
+            promotion = switch (Character.toLowerCase(text.charAt(4))) {
+                case 'q' -> ChessPiece.PieceType.QUEEN;
+                case 'r' -> ChessPiece.PieceType.ROOK;
+                case 'b' -> ChessPiece.PieceType.BISHOP;
+                case 'n' -> ChessPiece.PieceType.KNIGHT;
+                default -> throw new IllegalArgumentException("bad promotion: " + text);
+            };
+        }
+        return new ChessMove(position(text, 0), position(text, 2), promotion);
+    }
+
+    private static String square(ChessPosition p) {
+        return "" + (char) ('a' + p.getColumn() - 1) + p.getRow();
+    }
+
+    private static ChessPosition position(String text, int at) {
+        int col = text.charAt(at) - 'a' + 1;
+        int row = text.charAt(at + 1) - '0';
+        if (col < 1 || col > 8 || row < 1 || row > 8) {
+            throw new IllegalArgumentException("bad square in move: " + text);
+        }
+        return new ChessPosition(row, col);
+    }
+}
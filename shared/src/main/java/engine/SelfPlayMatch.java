@@ -0,0 +1,281 @@
+package engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.InvalidMoveException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Plays a candidate engine against a baseline to tell whether a change made it
+ * stronger or faster.
+ * <p>
+ * Games run in parallel on a fixed pool (one per core by default). Each opening
+ * from the suite is played twice with colors swapped, {@link ChessGame} referees
+ * every move, and the match stops as soon as the {@link Sprt} reaches a decision
+ * or the game budget runs out.
+ */
+public final class SelfPlayMatch {
+
+    /**
+     * One side of the match. A fresh engine is taken from {@code engines} for
+     * every game, so options such as hash size can differ between players.
+     */
+    public record Player(String name, Supplier<Engine> engines, Engine.Limits limits) {
+    }
+
+    /**
+     * @param maxGames upper bound on games if the SPRT never decides
+     * @param threads  games played at once
+     * @param maxPlies games still running after this many plies are drawn
+     * @param sprt     the stopping rule
+     */
+    public record Settings(int maxGames, int threads, int maxPlies, Sprt sprt) {
+        public static Settings defaults() {
+            return new Settings(20_000, Runtime.getRuntime().availableProcessors(), 300,
+                    new Sprt(0, 10, 0.05, 0.05));
+        }
+    }
+
+    /**
+     * Search cost for one player over the whole match.
+     */
+    public record Stats(long moves, long nodes, long searchNanos) {
+        public long nodesPerSecond() {
+            return searchNanos == 0 ? 0 : nodes * 1_000_000_000L / searchNanos;
+        }
+
+        public double millisPerMove() {
+            return moves == 0 ? 0 : searchNanos / 1_000_000.0 / moves;
+        }
+    }
+
+    /**
+     * Results from the candidate's point of view.
+     */
+    public record Report(String candidate, String baseline, int wins, int draws, int losses,
+                         double llr, Sprt.Decision decision, Stats candidateStats, Stats baselineStats) {
+        public int games() {
+            return wins + draws + losses;
+        }
+
+        public double elo() {
+            return Sprt.elo(wins, draws, losses);
+        }
+
+        public double eloError() {
+            return Sprt.eloError(wins, draws, losses);
+        }
+
+        public String summary() {
+            return String.format("""
+                    %s vs %s: %d games, +%d =%d -%d
+                    Elo %+.1f +/- %.1f, LLR %.2f (%s)
+                    %s: %d nodes/s, %.1f ms/move
+                    %s: %d nodes/s, %.1f ms/move""",
+                    candidate, baseline, games(), wins, draws, losses,
+                    elo(), eloError(), llr, decision,
+                    candidate, candidateStats.nodesPerSecond(), candidateStats.millisPerMove(),
+                    baseline, baselineStats.nodesPerSecond(), baselineStats.millisPerMove());
+        }
+    }
+
+    private enum Outcome { WHITE_WINS, BLACK_WINS, DRAW }
+
+    private final Player candidate;
+    private final Player baseline;
+    private final List<String> openings;
+    private final Settings settings;
+
+    // match state, guarded by this
+    private int wins;
+    private int draws;
+    private int losses;
+    private final long[] candidateTotals = new long[3];
+    private final long[] baselineTotals = new long[3];
+
+    public SelfPlayMatch(Player candidate, Player baseline, List<String> openings, Settings settings) {
+        if (openings.isEmpty()) {
+            throw new IllegalArgumentException("opening suite is empty");
+        }
+        this.candidate = candidate;
+        this.baseline = baseline;
+        this.openings = List.copyOf(openings);
+        this.settings = settings;
+    }
+
+    /**
+     * Plays games until the SPRT decides or {@code maxGames} have been played.
+     */
+    public Report run() throws InterruptedException {
+        var next = new AtomicInteger();
+        var decided = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(settings.threads());
+        try {
+            for (int t = 0; t < settings.threads(); t++) {
+                pool.execute(() -> {
+                    int game;
+                    while (!decided.get() && (game = next.getAndIncrement()) < settings.maxGames()) {
+                        boolean candidateWhite = game % 2 == 0;
+                        Outcome outcome = play(openings.get((game / 2) % openings.size()), candidateWhite);
+                        if (record(outcome, candidateWhite) != Sprt.Decision.CONTINUE) {
+                            decided.set(true);
+                        }
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+        }
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        return report();
+    }
+
+    public synchronized Report report() {
+        return new Report(candidate.name(), baseline.name(), wins, draws, losses,
+                settings.sprt().llr(wins, draws, losses), settings.sprt().decide(wins, draws, losses),
+                new Stats(candidateTotals[0], candidateTotals[1], candidateTotals[2]),
+                new Stats(baselineTotals[0], baselineTotals[1], baselineTotals[2]));
+    }
+
+    private synchronized Sprt.Decision record(Outcome outcome, boolean candidateWhite) {
+        if (outcome == Outcome.DRAW) {
+            draws++;
+        } else if ((outcome == Outcome.WHITE_WINS) == candidateWhite) {
+            wins++;
+        } else {
+            losses++;
+        }
+        return settings.sprt().decide(wins, draws, losses);
+    }
+
+    private synchronized void account(boolean isCandidate, Engine.Result result) {
+        long[] totals = isCandidate ? candidateTotals : baselineTotals;
+        totals[0]++;
+        totals[1] += result.nodes();
+        totals[2] += result.elapsedNanos();
+    }
+
+    // referees one game from an opening
+    private Outcome play(String opening, boolean candidateWhite) {
+        ChessGame game = Fen.parse(opening);
+        Engine candidateEngine = candidate.engines().get();
+        Engine baselineEngine = baseline.engines().get();
+        Map<Long, Integer> seen = new HashMap<>();
+        int quietPlies = 0;
+
+        for (int ply = 0; ply < settings.maxPlies(); ply++) {
+            ChessGame.TeamColor toMove = game.getTeamTurn();
+            if (game.isInCheckmate(toMove)) {
+                return toMove == ChessGame.TeamColor.WHITE ? Outcome.BLACK_WINS : Outcome.WHITE_WINS;
+            }
+            if (game.isInStalemate(toMove) || insufficientMaterial(game) || quietPlies >= 100
+                    || seen.merge(Zobrist.key(game), 1, Integer::sum) >= 3) {
+                return Outcome.DRAW;
+            }
+
+            boolean candidateToMove = (toMove == ChessGame.TeamColor.WHITE) == candidateWhite;
+            Player player = candidateToMove ? candidate : baseline;
+            Engine engine = candidateToMove ? candidateEngine : baselineEngine;
+            Engine.Result result = engine.search(game, player.limits());
+            account(candidateToMove, result);
+
+            ChessMove move = result.bestMove();
+            boolean resetsClock = move != null && (game.getBoard().getPiece(move.getEndPosition()) != null
+                    || game.getBoard().getPiece(move.getStartPosition()).getPieceType() == ChessPiece.PieceType.PAWN);
+            try {
+                if (move == null) {
+                    throw new InvalidMoveException("engine returned no move");
+                }
+                game.makeMove(move);
+            } catch (InvalidMoveException e) {
+                // an illegal move forfeits the game
+                return toMove == ChessGame.TeamColor.WHITE ? Outcome.BLACK_WINS : Outcome.WHITE_WINS;
+            }
+            quietPlies = resetsClock ? 0 : quietPlies + 1;
+        }
+        return Outcome.DRAW;
+    }
+
+    private static boolean insufficientMaterial(ChessGame game) {
+        List<ChessPiece> pieces = new ArrayList<>();
+        Tablebase.collect(game.getBoard(), pieces, new ArrayList<>());
+        return pieces.size() <= 3 && Material.insufficient(Material.signatureOf(pieces));
+    }
+
+    /**
+     * Loads the opening suite bundled with the engine.
+     */
+    public static List<String> defaultOpenings() {
+        var in = SelfPlayMatch.class.getResourceAsStream("/engine/openings.fen");
+        if (in == null) {
+            throw new IllegalStateException("missing /engine/openings.fen");
+        }
+        try (var reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return parseOpenings(reader.lines().toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Loads an opening suite from a file with one FEN per line; blank lines and
+     * lines starting with '#' are skipped.
+     */
+    public static List<String> loadOpenings(Path file) throws IOException {
+        return parseOpenings(Files.readAllLines(file));
+    }
+
+    private static List<String> parseOpenings(List<String> lines) {
+        List<String> fens = new ArrayList<>();
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                Fen.parse(trimmed);
+                fens.add(trimmed);
+            }
+        }
+        return fens;
+    }
+
+    /**
+     * Usage: {@code SelfPlayMatch <candidate ms/move> <baseline ms/move> [max games] [openings file]}.
+     * Both sides run the current engine, so this compares time budgets out of
+     * the box; swap in a modified {@link Player} supplier to test an engine change.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("usage: SelfPlayMatch <candidate ms/move> <baseline ms/move> [max games] [openings file]");
+            return;
+        }
+        long candidateMillis = Long.parseLong(args[0]);
+        long baselineMillis = Long.parseLong(args[1]);
+        var defaults = Settings.defaults();
+        int maxGames = (args.length > 2) ? Integer.parseInt(args[2]) : defaults.maxGames();
+        List<String> openings = (args.length > 3) ? loadOpenings(Path.of(args[3])) : defaultOpenings();
+
+        var match = new SelfPlayMatch(
+                new Player("candidate", Engine::new, Engine.Limits.millis(candidateMillis)),
+                new Player("baseline", Engine::new, Engine.Limits.millis(baselineMillis)),
+                openings,
+                new Settings(maxGames, defaults.threads(), defaults.maxPlies(), defaults.sprt()));
+        System.out.println(match.run().summary());
+    }
+}
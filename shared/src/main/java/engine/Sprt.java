@@ -0,0 +1,121 @@
+package engine;
+
+/**
+ * Sequential probability ratio test for engine matches.
+ * <p>
+ * H0 says the candidate is {@code elo0} stronger than the baseline, H1 says it is
+ * {@code elo1} stronger. After every game the log-likelihood ratio of the
+ * win/draw/loss counts is compared to bounds derived from the error rates, so
+ * clear results stop early and close ones keep playing. Uses the usual normal
+ * approximation of the trinomial score distribution.
+ */
+public final class Sprt {
+
+    public enum Decision {
+        /** the candidate is at least elo1 stronger */
+        ACCEPT_H1,
+        /** the candidate is not better than elo0 */
+        ACCEPT_H0,
+        /** keep playing */
+        CONTINUE
+    }
+
+    private static final double PSEUDO_COUNT = 0.5;
+
+    private final double elo0;
+    private final double elo1;
+    private final double lower;
+    private final double upper;
+
+    /**
+     * @param elo0  Elo difference under H0
+     * @param elo1  Elo difference under H1
+     * @param alpha chance of accepting H1 when H0 is true
+     * @param beta  chance of accepting H0 when H1 is true
+     */
+    public Sprt(double elo0, double elo1, double alpha, double beta) {
+        if (elo1 <= elo0) {
+            throw new IllegalArgumentException("elo1 must be greater than elo0");
+        }
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.lower = Math.log(beta / (1 - alpha));
+        this.upper = Math.log((1 - beta) / alpha);
+    }
+
+    public double lowerBound() {
+        return lower;
+    }
+
+    public double upperBound() {
+        return upper;
+    }
+
+    public double llr(int wins, int draws, int losses) {
+        int games = wins + draws + losses;
+        if (games == 0) {
+            return 0;
+        }
+        //half a game of each result keeps the variance above zero, so a match won,
+        //lost or drawn every time still reaches a decision instead of running out
+        double total = games + 3 * PSEUDO_COUNT;
+        double w = (wins + PSEUDO_COUNT) / total;
+        double d = (draws + PSEUDO_COUNT) / total;
+        double score = w + d / 2;
+        double variance = w + d / 4 - score * score;
+        double s0 = expectedScore(elo0);
+        double s1 = expectedScore(elo1);
+        return games * (s1 - s0) * (2 * score - s0 - s1) / (2 * variance);
+    }
+
+    public Decision decide(int wins, int draws, int losses) {
+        double llr = llr(wins, draws, losses);
+        if (llr >= upper) {
+            return Decision.ACCEPT_H1;
+        }
+        if (llr <= lower) {
+            return Decision.ACCEPT_H0;
+        }
+        return Decision.CONTINUE;
+    }
+
+    public static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /**
+     * @return the Elo difference implied by a match score, clamped to +-999
+     */
+    public static double elo(int wins, int draws, int losses) {
+        int games = wins + draws + losses;
+        if (games == 0) {
+            return 0;
+        }
+        return eloOf((wins + draws / 2.0) / games);
+    }
+
+    /**
+     * @return half-width of the 95% confidence interval of {@link #elo}
+     */
+    public static double eloError(int wins, int draws, int losses) {
+        int games = wins + draws + losses;
+        if (games == 0) {
+            return 0;
+        }
+        double w = (double) wins / games;
+        double d = (double) draws / games;
+        double score = w + d / 2;
+        double deviation = Math.sqrt(Math.max(0, w + d / 4 - score * score) / games);
+        return (eloOf(score + 1.96 * deviation) - eloOf(score - 1.96 * deviation)) / 2;
+    }
+
+    private static double eloOf(double score) {
+        if (score <= 0) {
+            return -999;
+        }
+        if (score >= 1) {
+            return 999;
+        }
+        return Math.max(-999, Math.min(999, -400 * Math.log10(1 / score - 1)));
+    }
+}
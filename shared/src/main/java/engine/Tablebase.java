@@ -0,0 +1,227 @@
+package engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Endgame tablebases for small material (KQK, KRK, KPK, KBNK) built by
+ * {@link TablebaseGenerator}.
+ * <p>
+ * Each table holds one byte per position (see {@link Material} for the index
+ * layout). Tables are stored with the stronger side as white; probes for the
+ * mirrored material swap colors and flip the board. Files are memory mapped the
+ * first time a position with that material is probed, so opening a directory of
+ * tables costs nothing until they are used.
+ * <p>
+ * Byte encoding, from the side to move's point of view:
+ * <ul>
+ *   <li>{@code 0} draw</li>
+ *   <li>{@code 1..127} win, mate in that many plies</li>
+ *   <li>{@code 128..254} loss, mated in (value - 128) plies</li>
+ *   <li>{@code 255} illegal position</li>
+ * </ul>
+ */
+public final class Tablebase {
+
+    public static final List<String> STANDARD = List.of("KQK", "KRK", "KPK", "KBNK");
+
+    static final int DRAW = 0;
+    static final int LOSS = 0x80;
+    static final int ILLEGAL = 0xFF;
+    static final int MAX_PLIES = 126;
+    static final int MAX_PIECES = 4;
+
+    public enum Outcome { WIN, DRAW, LOSS }
+
+    /**
+     * A probe result for the side to move.
+     *
+     * @param outcome     win, draw or loss with perfect play
+     * @param pliesToMate half-moves until mate, or 0 for a draw
+     */
+    public record Result(Outcome outcome, int pliesToMate) {
+        public int movesToMate() {
+            return (pliesToMate + 1) / 2;
+        }
+    }
+
+    private final Path directory;
+    private final ConcurrentHashMap<String, Optional<ByteBuffer>> tables = new ConcurrentHashMap<>();
+
+    private Tablebase(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the tables in a directory. Nothing is read until the first probe.
+     */
+    public static Tablebase open(Path directory) {
+        return new Tablebase(directory);
+    }
+
+    /**
+     * A tablebase that only holds tables installed by a generator.
+     */
+    public static Tablebase inMemory() {
+        return new Tablebase(null);
+    }
+
+    public boolean covers(String signature) {
+        String canonical = Material.parse(signature).signature();
+        return table(canonical) != null || table(Material.flip(canonical)) != null;
+    }
+
+    /**
+     * Looks up the game's position.
+     *
+     * @return the exact result, or null if no table covers this material
+     */
+    public Result probe(ChessGame game) {
+        List<ChessPiece> pieces = new ArrayList<>();
+        List<Integer> squares = new ArrayList<>();
+        collect(game.getBoard(), pieces, squares);
+        int code = code(pieces, squares, game.getTeamTurn());
+        return (code < 0 || code == ILLEGAL) ? null : decode(code);
+    }
+
+    /**
+     * Picks the move that keeps the best result: the fastest mate when winning,
+     * any drawing move when drawn and the longest defence when losing.
+     *
+     * @return the best move, or null if no table covers this position
+     */
+    public ChessMove bestMove(ChessGame game) {
+        Result root = probe(game);
+        if (root == null) {
+            return null;
+        }
+        ChessMove best = null;
+        int bestScore = Integer.MIN_VALUE;
+        for (ChessMove move : Moves.legal(game)) {
+            Result reply = probe(Moves.play(game, move));
+            int score = (reply == null) ? 0 : score(reply);
+            if (best == null || score > bestScore) {
+                best = move;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    // ranks a child position from the mover's point of view
+    private static int score(Result reply) {
+        return switch (reply.outcome()) {
+            case LOSS -> 1000 - reply.pliesToMate();
+            case DRAW -> 0;
+            case WIN -> -1000 + reply.pliesToMate();
+        };
+    }
+
+    void install(String signature, ByteBuffer table) {
+        tables.put(signature, Optional.of(table));
+    }
+
+    Path directory() {
+        return directory;
+    }
+
+    /**
+     * Raw lookup used by the generator and by {@link #probe}.
+     *
+     * @return the table byte, {@link #DRAW} for insufficient material, or -1
+     * if no table covers the pieces
+     */
+    int code(List<ChessPiece> pieces, List<Integer> squares, ChessGame.TeamColor toMove) {
+        if (pieces.size() > MAX_PIECES) {
+            return -1;
+        }
+        String signature = Material.signatureOf(pieces);
+        if (Material.insufficient(signature)) {
+            return DRAW;
+        }
+        ByteBuffer table = table(signature);
+        if (table != null) {
+            var material = Material.parse(signature);
+            return Byte.toUnsignedInt(table.get((int) material.index(toMove, material.assign(pieces, squares))));
+        }
+        String flipped = Material.flip(signature);
+        table = table(flipped);
+        if (table == null) {
+            return -1;
+        }
+        var material = Material.parse(flipped);
+        List<ChessPiece> swapped = new ArrayList<>(pieces.size());
+        List<Integer> mirrored = new ArrayList<>(squares.size());
+        for (int i = 0; i < pieces.size(); i++) {
+            ChessPiece p = pieces.get(i);
+            swapped.add(new ChessPiece(Moves.opposite(p.getTeamColor()), p.getPieceType()));
+            mirrored.add(squares.get(i) ^ 56);
+        }
+        return Byte.toUnsignedInt(table.get((int) material.index(Moves.opposite(toMove), material.assign(swapped, mirrored))));
+    }
+
+    static Result decode(int code) {
+        if (code == DRAW) {
+            return new Result(Outcome.DRAW, 0);
+        }
+        if (code < LOSS) {
+            return new Result(Outcome.WIN, code);
+        }
+        return new Result(Outcome.LOSS, code - LOSS);
+    }
+
+    private ByteBuffer table(String signature) {
+        return tables.computeIfAbsent(signature, this::map).orElse(null);
+    }
+
+    private Optional<ByteBuffer> map(String signature) {
+        if (directory == null) {
+            return Optional.empty();
+        }
+        Path file = fileFor(directory, signature);
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        long expected = Material.parse(signature).size();
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != expected) {
+                throw new IllegalStateException("corrupt tablebase file " + file);
+            }
+            return Optional.of(channel.map(FileChannel.MapMode.READ_ONLY, 0, expected));
+        } catch (IOException e) {
+            throw new UncheckedIOException("unable to map " + file, e);
+        }
+    }
+
+    static Path fileFor(Path directory, String signature) {
+        return directory.resolve(signature + ".tb");
+    }
+
+    static void collect(ChessBoard board, List<ChessPiece> pieces, List<Integer> squares) {
+        for (int r = 1; r <= 8; r++) {
+            for (int c = 1; c <= 8; c++) {
+                ChessPiece p = board.getPiece(new ChessPosition(r, c));
+                if (p != null) {
+                    pieces.add(p);
+                    squares.add(Material.square(r, c));
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,400 @@
+package engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds {@link Tablebase} tables by retrograde analysis.
+ * <p>
+ * Every index of the material is visited once to mark illegal positions and
+ * checkmates, then repeated passes assign "win in n" to positions with a move
+ * into a "loss in n - 1", and "loss in n" to positions whose every move leads to
+ * a win for the opponent in at most n - 1 plies. Whatever is left when a pass
+ * assigns nothing is a draw. Each pass is split over a fork-join pool, and the
+ * table itself lives in a direct (off-heap) buffer.
+ * <p>
+ * Moves that change the material (captures, promotions) are looked up in the
+ * tablebase passed to the constructor, so KPK needs KQK and KRK first.
+ */
+public final class TablebaseGenerator {
+
+    private static final int LEAF_SIZE = 1 << 12;
+
+    private final Tablebase tablebase;
+    private final ForkJoinPool pool;
+
+    public TablebaseGenerator(Tablebase tablebase) {
+        this(tablebase, ForkJoinPool.commonPool());
+    }
+
+    public TablebaseGenerator(Tablebase tablebase, ForkJoinPool pool) {
+        this.tablebase = tablebase;
+        this.pool = pool;
+    }
+
+    /**
+     * Generates a table and installs it in the tablebase.
+     *
+     * @param signature material such as "KRK", strong side first
+     * @return the finished off-heap table
+     */
+    public ByteBuffer generate(String signature) {
+        var material = Material.parse(signature);
+        if (material.pieceCount() > Tablebase.MAX_PIECES) {
+            throw new IllegalArgumentException("only tables with up to four pieces are supported: " + signature);
+        }
+        var job = new Job(material, ByteBuffer.allocateDirect((int) material.size()));
+
+        pool.invoke(new Pass(job, 0, 0, material.size()));
+        for (int ply = 1; ply <= Tablebase.MAX_PLIES; ply++) {
+            long assigned = pool.invoke(new Pass(job, ply, 0, material.size()));
+            // a conversion into a sub-table can still produce longer results after a quiet pass
+            if (assigned == 0 && ply > job.deepestConversion.get()) {
+                break;
+            }
+        }
+        var table = job.table;
+        tablebase.install(material.signature(), table);
+        return table;
+    }
+
+    /**
+     * Generates a table and writes it to the tablebase directory.
+     *
+     * @return the finished off-heap table
+     */
+    public ByteBuffer generateAndWrite(String signature) {
+        Path dir = tablebase.directory();
+        if (dir == null) {
+            throw new IllegalStateException("tablebase has no directory");
+        }
+        var material = Material.parse(signature);
+        ByteBuffer table = generate(signature);
+        Path file = Tablebase.fileFor(dir, material.signature());
+        try {
+            Files.createDirectories(dir);
+            try (var channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                var out = table.duplicate().clear();
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("unable to write " + file, e);
+        }
+        return table;
+    }
+
+    /**
+     * Usage: {@code TablebaseGenerator <dir> [KQK KRK ...]}. Tables are built in
+     * the order given, so list sub-tables first.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("usage: TablebaseGenerator <dir> [signatures...]");
+            return;
+        }
+        var generator = new TablebaseGenerator(Tablebase.open(Path.of(args[0])));
+        List<String> signatures = (args.length > 1) ? List.of(args).subList(1, args.length) : Tablebase.STANDARD;
+        for (String sig : signatures) {
+            long start = System.nanoTime();
+            generator.generateAndWrite(sig);
+            System.out.printf("%s done in %d ms%n", sig, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    // state shared by all passes over one table
+    private record Job(Material material, ByteBuffer table, AtomicInteger deepestConversion) {
+        Job(Material material, ByteBuffer table) {
+            this(material, table, new AtomicInteger());
+        }
+    }
+
+    // one pass over an index range; returns how many positions it resolved
+    private final class Pass extends RecursiveTask<Long> {
+        private final Job job;
+        private final int ply;
+        private final long from;
+        private final long to;
+
+        Pass(Job job, int ply, long from, long to) {
+            this.job = job;
+            this.ply = ply;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from > LEAF_SIZE) {
+                long mid = (from + to) >>> 1;
+                var left = new Pass(job, ply, from, mid);
+                left.fork();
+                long right = new Pass(job, ply, mid, to).compute();
+                return right + left.join();
+            }
+            var scratch = new Scratch(job);
+            var table = job.table();
+            long assigned = 0;
+            for (long idx = from; idx < to; idx++) {
+                if (ply == 0) {
+                    assigned += scratch.initialize(idx);
+                } else if (Byte.toUnsignedInt(table.get((int) idx)) == Tablebase.DRAW) {
+                    assigned += scratch.resolve(idx, ply);
+                }
+            }
+            return assigned;
+        }
+    }
+
+    // per-task board and buffers, so positions can be set up without allocating a game each time
+    private final class Scratch {
+        private final Material material;
+        private final ByteBuffer table;
+        private final AtomicInteger deepestConversion;
+        private final ChessBoard board = new ChessBoard();
+        private final int[] squares;
+        private final int[] child;
+        private final List<ChessPiece> childPieces = new ArrayList<>();
+        private final List<Integer> childSquares = new ArrayList<>();
+
+        Scratch(Job job) {
+            this.material = job.material();
+            this.table = job.table();
+            this.deepestConversion = job.deepestConversion();
+            this.squares = new int[material.pieceCount()];
+            this.child = new int[material.pieceCount()];
+        }
+
+        // pass 0: mark illegal positions and checkmates
+        int initialize(long idx) {
+            material.squares(idx, squares);
+            ChessGame.TeamColor toMove = material.sideToMove(idx);
+            if (!wellFormed()) {
+                table.put((int) idx, (byte) Tablebase.ILLEGAL);
+                return 1;
+            }
+            place();
+            try {
+                if (kingAttacked(Moves.opposite(toMove))) {
+                    table.put((int) idx, (byte) Tablebase.ILLEGAL);
+                    return 1;
+                }
+                if (kingAttacked(toMove) && !hasLegalMove(toMove)) {
+                    table.put((int) idx, (byte) Tablebase.LOSS);
+                    return 1;
+                }
+                return 0;
+            } finally {
+                clear();
+            }
+        }
+
+        /*
+         * pass n: try to prove a win or loss in exactly n plies. The side to move
+         * delivers mate on odd plies only, so odd passes look for wins and even
+         * passes for losses, and a loss pass can stop at the first move that
+         * escapes.
+         */
+        int resolve(long idx, int ply) {
+            material.squares(idx, squares);
+            ChessGame.TeamColor toMove = material.sideToMove(idx);
+            boolean lookingForWin = (ply % 2) == 1;
+            place();
+            try {
+                boolean anyMove = false;
+                int longest = -1;
+                for (int slot = 0; slot < squares.length; slot++) {
+                    ChessPiece piece = material.piece(slot);
+                    if (piece.getTeamColor() != toMove) {
+                        continue;
+                    }
+                    var from = position(squares[slot]);
+                    for (ChessMove move : piece.pieceMoves(board, from)) {
+                        int code = childCode(slot, move, toMove);
+                        if (code < 0) {
+                            continue;
+                        }
+                        anyMove = true;
+                        if (lookingForWin) {
+                            if (code == Tablebase.LOSS + ply - 1) {
+                                table.put((int) idx, (byte) ply);
+                                return 1;
+                            }
+                        } else if (code == Tablebase.DRAW || code >= Tablebase.LOSS || code >= ply) {
+                            return 0;
+                        } else {
+                            longest = Math.max(longest, code);
+                        }
+                    }
+                }
+                if (!lookingForWin && anyMove && longest == ply - 1) {
+                    table.put((int) idx, (byte) (Tablebase.LOSS + ply));
+                    return 1;
+                }
+                return 0;
+            } finally {
+                clear();
+            }
+        }
+
+        /**
+         * Plays a pseudo-legal move on the scratch board and reads the resulting
+         * position's code.
+         *
+         * @return the child's table byte, or -1 if the move leaves the king in check
+         */
+        private int childCode(int slot, ChessMove move, ChessGame.TeamColor toMove) {
+            var start = move.getStartPosition();
+            var end = move.getEndPosition();
+            ChessPiece moving = board.getPiece(start);
+            ChessPiece captured = board.getPiece(end);
+            ChessPiece placed = (move.getPromotionPiece() != null)
+                    ? new ChessPiece(toMove, move.getPromotionPiece())
+                    : moving;
+            int endSquare = Material.square(end.getRow(), end.getColumn());
+
+            board.addPiece(end, placed);
+            board.addPiece(start, null);
+            System.arraycopy(squares, 0, child, 0, squares.length);
+            child[slot] = endSquare;
+            int capturedSlot = -1;
+            if (captured != null) {
+                for (int s = 0; s < squares.length; s++) {
+                    if (s != slot && squares[s] == endSquare) {
+                        capturedSlot = s;
+                    }
+                }
+            }
+            try {
+                if (kingAttacked(toMove, capturedSlot, child)) {
+                    return -1;
+                }
+                ChessGame.TeamColor next = Moves.opposite(toMove);
+                if (captured == null && placed == moving) {
+                    return Byte.toUnsignedInt(table.get((int) material.index(next, child)));
+                }
+                childPieces.clear();
+                childSquares.clear();
+                for (int s = 0; s < child.length; s++) {
+                    if (s != capturedSlot) {
+                        childPieces.add(s == slot ? placed : material.piece(s));
+                        childSquares.add(child[s]);
+                    }
+                }
+                int code = tablebase.code(childPieces, childSquares, next);
+                if (code < 0) {
+                    throw new IllegalStateException("generate the table for "
+                            + Material.signatureOf(childPieces) + " before " + material.signature());
+                }
+                if (code != Tablebase.DRAW) {
+                    deepestConversion.accumulateAndGet(Tablebase.decode(code).pliesToMate() + 1, Math::max);
+                }
+                return code;
+            } finally {
+                board.addPiece(start, moving);
+                board.addPiece(end, captured);
+            }
+        }
+
+        private boolean hasLegalMove(ChessGame.TeamColor toMove) {
+            for (int slot = 0; slot < squares.length; slot++) {
+                ChessPiece piece = material.piece(slot);
+                if (piece.getTeamColor() != toMove) {
+                    continue;
+                }
+                var from = position(squares[slot]);
+                for (ChessMove move : piece.pieceMoves(board, from)) {
+                    ChessPiece captured = board.getPiece(move.getEndPosition());
+                    board.addPiece(move.getEndPosition(), piece);
+                    board.addPiece(from, null);
+                    int saved = squares[slot];
+                    squares[slot] = Material.square(move.getEndPosition().getRow(), move.getEndPosition().getColumn());
+                    int capturedSlot = -1;
+                    for (int s = 0; s < squares.length && captured != null; s++) {
+                        if (s != slot && squares[s] == squares[slot]) {
+                            capturedSlot = s;
+                        }
+                    }
+                    boolean safe = !kingAttacked(toMove, capturedSlot, squares);
+                    squares[slot] = saved;
+                    board.addPiece(from, piece);
+                    board.addPiece(move.getEndPosition(), captured);
+                    if (safe) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean kingAttacked(ChessGame.TeamColor side) {
+            return kingAttacked(side, -1, squares);
+        }
+
+        // only the few pieces in the table are checked, instead of scanning the whole board
+        private boolean kingAttacked(ChessGame.TeamColor side, int capturedSlot, int[] at) {
+            int kingSquare = at[side == ChessGame.TeamColor.WHITE ? 0 : 1];
+            for (int s = 0; s < at.length; s++) {
+                ChessPiece attacker = material.piece(s);
+                if (s == capturedSlot || attacker.getTeamColor() == side) {
+                    continue;
+                }
+                for (ChessMove m : board.getPiece(position(at[s])).pieceMoves(board, position(at[s]))) {
+                    if (Material.square(m.getEndPosition().getRow(), m.getEndPosition().getColumn()) == kingSquare) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean wellFormed() {
+            for (int a = 0; a < squares.length; a++) {
+                for (int b = a + 1; b < squares.length; b++) {
+                    if (squares[a] == squares[b]) {
+                        return false;
+                    }
+                }
+                int row = Material.row(squares[a]);
+                if (material.piece(a).getPieceType() == ChessPiece.PieceType.PAWN && (row == 1 || row == 8)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void place() {
+            for (int s = 0; s < squares.length; s++) {
+                board.addPiece(position(squares[s]), material.piece(s));
+            }
+        }
+
+        private void clear() {
+            for (int sq : squares) {
+                board.addPiece(position(sq), null);
+            }
+        }
+    }
+
+    private static ChessPosition position(int square) {
+        return new ChessPosition(Material.row(square), Material.col(square));
+    }
+}
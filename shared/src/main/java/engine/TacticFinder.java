@@ -0,0 +1,102 @@
+package engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+
+import java.util.List;
+
+/**
+ * Decides whether a position makes a good puzzle: the side to move has exactly
+ * one move that mates or wins decisive material, and the win was not already
+ * on the board before that move.
+ * <p>
+ * Not thread safe; use one finder per thread.
+ */
+public final class TacticFinder {
+
+    /**
+     * @param score  engine score of the solution in centipawns for the solver
+     * @param mateIn moves to mate, or 0 if the solution wins material
+     */
+    public record Tactic(ChessMove solution, int score, int mateIn) {
+    }
+
+    //the solution must gain at least this much over the static evaluation
+    private static final int MIN_SWING = 200;
+    //and leave the solver at least this far ahead
+    private static final int MIN_WIN = 250;
+    //while every other move scores at most this
+    private static final int MAX_ALTERNATIVE = 100;
+    private static final int MAX_MATE_MOVES = 4;
+
+    private final Engine engine;
+    private final int depth;
+    private final MateFinder mates = new MateFinder(50_000);
+    private long nodes;
+
+    public TacticFinder(int depth) {
+        this.engine = new Engine(null, 1 << 16);
+        this.depth = Math.max(2, depth);
+    }
+
+    /**
+     * @return the puzzle's solution, or null if the position has no single
+     * clearly winning move
+     */
+    public Tactic find(ChessGame position) {
+        List<ChessMove> moves = Moves.legal(position);
+        if (moves.size() < 2) {
+            return null;
+        }
+        var best = search(position, depth);
+        if (best.bestMove() == null) {
+            return null;
+        }
+
+        if (best.isMate() && best.mateIn() > 0 && best.mateIn() <= MAX_MATE_MOVES) {
+            //confirm the shortest mate, then make sure nothing else mates
+            var mate = mates.find(position, best.mateIn());
+            nodes += mate.nodes();
+            if (mate.status() != MateFinder.Status.MATE) {
+                return null;
+            }
+            ChessMove solution = mate.line().get(0);
+            int replyDepth = 2 * mate.movesToMate();
+            for (ChessMove other : moves) {
+                if (!other.equals(solution)) {
+                    var reply = search(Moves.play(position, other), replyDepth);
+                    if (reply.isMate() && reply.score() < 0) {
+                        return null;
+                    }
+                }
+            }
+            return new Tactic(solution, best.score(), mate.movesToMate());
+        }
+
+        if (best.isMate() || best.score() < MIN_WIN || best.score() - Engine.evaluate(position) < MIN_SWING) {
+            return null;
+        }
+        for (ChessMove other : moves) {
+            if (!other.equals(best.bestMove())) {
+                var reply = search(Moves.play(position, other), depth - 1);
+                if (-reply.score() > MAX_ALTERNATIVE) {
+                    return null;
+                }
+            }
+        }
+        return new Tactic(best.bestMove(), best.score(), 0);
+    }
+
+    /**
+     * @return nodes searched by this finder so far
+     */
+    public long nodes() {
+        return nodes;
+    }
+
+    private Engine.Result search(ChessGame position, int plies) {
+        var result = engine.search(position, Engine.Limits.depth(plies));
+        nodes += result.nodes();
+        return result;
+    }
+}
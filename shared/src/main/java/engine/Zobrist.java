@@ -0,0 +1,53 @@
+package engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+import java.util.SplittableRandom;
+
+/**
+ * 64-bit Zobrist keys for positions, used to index transposition tables and
+ * caches. Keys are generated from a fixed seed, so the same position hashes
+ * the same way across runs and across server nodes.
+ */
+public final class Zobrist {
+
+    private static final long[][] PIECE_SQUARE = new long[12][64];
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        var random = new SplittableRandom(0x2405_C4E5_5CA1_AB1EL);
+        for (long[] row : PIECE_SQUARE) {
+            for (int sq = 0; sq < 64; sq++) {
+                row[sq] = random.nextLong();
+            }
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    public static long key(ChessGame game) {
+        long key = key(game.getBoard());
+        if (game.getTeamTurn() == ChessGame.TeamColor.BLACK) {
+            key ^= BLACK_TO_MOVE;
+        }
+        return key;
+    }
+
+    public static long key(ChessBoard board) {
+        long key = 0;
+        for (int r = 1; r <= 8; r++) {
+            for (int c = 1; c <= 8; c++) {
+                ChessPiece p = board.getPiece(new ChessPosition(r, c));
+                if (p != null) {
+                    key ^= PIECE_SQUARE[p.getTeamColor().ordinal() * 6 + p.getPieceType().ordinal()][(r - 1) * 8 + c - 1];
+                }
+            }
+        }
+        return key;
+    }
+}
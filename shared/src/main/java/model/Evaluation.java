@@ -0,0 +1,14 @@
+package model;
+
+import java.util.List;
+
+/**
+ * A snapshot of the server's running analysis of a game. Scores are in
+ * centipawns from white's point of view; mateIn is positive when white mates.
+ */
+public record Evaluation(int depth,
+                         int score,
+                         int mateIn,
+                         String bestMove,
+                         List<String> pv,
+                         long nodes) {}
@@ -2,8 +2,15 @@ package model;
 
 import chess.ChessGame;
 
+//version counts updates to the game, for compare-and-set writes
 public record GameData(int gameID,
                        String whiteUsername,
                        String blackUsername,
                        String gameName,
-                       ChessGame game) {}
\ No newline at end of file
+                       ChessGame game,
+                       int version) {
+
+    public GameData(int gameID, String whiteUsername, String blackUsername, String gameName, ChessGame game) {
+        this(gameID, whiteUsername, blackUsername, gameName, game, 0);
+    }
+}
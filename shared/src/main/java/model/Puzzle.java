@@ -0,0 +1,13 @@
+package model;
+
+/**
+ * A position with one clearly winning move, mined from a stored game.
+ * The solution is in coordinate notation (e.g. "d1h5"); mateIn is 0 for
+ * puzzles that win material rather than mate.
+ */
+public record Puzzle(int gameID,
+                     int ply,
+                     String fen,
+                     String solution,
+                     int score,
+                     int mateIn) {}
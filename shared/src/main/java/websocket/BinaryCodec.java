@@ -0,0 +1,261 @@
+package websocket;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ServerMessage;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary frames for the websocket, as an alternative to Gson text.
+ * <p>
+ * A client asks for it by connecting with {@code ?codec=binary}. Every frame
+ * starts with a one-byte type. Moves pack into two bytes: from-square,
+ * to-square and promotion. A board packs into 32 bytes, one nibble per square.
+ * Integers are big-endian. Strings are a two-byte length followed by UTF-8.
+ * Messages about a game carry its ID, or 0 if none was set.
+ * <p>
+ * Evaluations are not covered and stay JSON text, even on a binary connection.
+ */
+public final class BinaryCodec {
+
+    public static final String QUERY_PARAM = "codec";
+    public static final String NAME = "binary";
+
+    //command types on the wire; never renumber
+    private static final UserGameCommand.CommandType[] COMMANDS = {
+            null,
+            UserGameCommand.CommandType.CONNECT,
+            UserGameCommand.CommandType.MAKE_MOVE,
+            UserGameCommand.CommandType.LEAVE,
+            UserGameCommand.CommandType.RESIGN,
+            UserGameCommand.CommandType.WATCH_EVAL,
+            UserGameCommand.CommandType.UNWATCH_EVAL,
+            UserGameCommand.CommandType.RESYNC,
+            UserGameCommand.CommandType.SUBSCRIBE,
+            UserGameCommand.CommandType.UNSUBSCRIBE
+    };
+    //server message types on the wire; never renumber
+    private static final ServerMessage.ServerMessageType[] MESSAGES = {
+            null,
+            ServerMessage.ServerMessageType.LOAD_GAME,
+            ServerMessage.ServerMessageType.ERROR,
+            ServerMessage.ServerMessageType.NOTIFICATION,
+            ServerMessage.ServerMessageType.MOVE_APPLIED
+    };
+    private static final ChessPiece.PieceType[] PIECES = ChessPiece.PieceType.values();
+    private static final ServerMessage.GameStatus[] STATUSES = ServerMessage.GameStatus.values();
+    private static final int BLACK = 0x8;
+    private static final int NO_SEQUENCE = -1;
+    private static final int FLAG_MOVE_DELTAS = 0x1;
+
+    private BinaryCodec() {
+    }
+
+    /**
+     * @return true if the message has a binary form; the rest must go as text
+     */
+    public static boolean supports(ServerMessage message) {
+        return code(MESSAGES, message.getServerMessageType()) > 0;
+    }
+
+    public static byte[] encode(UserGameCommand command) {
+        byte[] token = utf8(command.getAuthToken());
+        var buf = ByteBuffer.allocate(1 + 4 + 1 + 2 + token.length + 2);
+        buf.put((byte) code(COMMANDS, command.getCommandType()));
+        buf.putInt(command.getGameID());
+        buf.put((byte) (command.wantsMoveDeltas() ? FLAG_MOVE_DELTAS : 0));
+        buf.putShort((short) token.length).put(token);
+        if (command.getMove() != null) {
+            buf.putShort(packMove(command.getMove()));
+        }
+        return trim(buf);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the frame is not a command
+     */
+    public static UserGameCommand decodeCommand(ByteBuffer frame) {
+        try {
+            var type = lookup(COMMANDS, frame.get());
+            int gameID = frame.getInt();
+            int flags = frame.get();
+            String token = string(frame);
+            ChessMove move = frame.remaining() >= 2 ? unpackMove(frame.getShort()) : null;
+            var command = new UserGameCommand(type, token, gameID, move);
+            command.setMoveDeltas((flags & FLAG_MOVE_DELTAS) != 0);
+            return command;
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("malformed command");
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the message has no binary form
+     */
+    public static byte[] encode(ServerMessage message) {
+        var type = message.getServerMessageType();
+        if (!supports(message)) {
+            throw new IllegalArgumentException("no binary form for " + type);
+        }
+        byte code = (byte) code(MESSAGES, type);
+        int gameID = (message.getGameID() == null) ? 0 : message.getGameID();
+        return switch (type) {
+            case LOAD_GAME -> {
+                var buf = ByteBuffer.allocate(1 + 4 + 4 + 1 + 32).put(code).putInt(gameID);
+                buf.putInt(message.getSequence() == null ? NO_SEQUENCE : message.getSequence());
+                var game = message.getGame();
+                buf.put((byte) (game.getTeamTurn() == ChessGame.TeamColor.WHITE ? 0 : 1));
+                packBoard(game.getBoard(), buf);
+                yield buf.array();
+            }
+            case MOVE_APPLIED -> ByteBuffer.allocate(1 + 4 + 4 + 2 + 1).put(code)
+                    .putInt(gameID)
+                    .putInt(message.getSequence())
+                    .putShort(packMove(message.getMove()))
+                    .put((byte) message.getStatus().ordinal())
+                    .array();
+            default -> {
+                String text = (type == ServerMessage.ServerMessageType.ERROR)
+                        ? message.getErrorMessage()
+                        : message.getMessage();
+                byte[] bytes = utf8(text);
+                yield ByteBuffer.allocate(1 + 4 + 2 + bytes.length).put(code).putInt(gameID)
+                        .putShort((short) bytes.length).put(bytes)
+                        .array();
+            }
+        };
+    }
+
+    /**
+     * @throws IllegalArgumentException if the frame is not a server message
+     */
+    public static ServerMessage decodeMessage(ByteBuffer frame) {
+        try {
+            var type = lookup(MESSAGES, frame.get());
+            int gameID = frame.getInt();
+            return switch (type) {
+                case LOAD_GAME -> {
+                    int sequence = frame.getInt();
+                    var game = new ChessGame();
+                    game.setTeamTurn(frame.get() == 0 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK);
+                    game.setBoard(unpackBoard(frame));
+                    if (sequence == NO_SEQUENCE) {
+                        yield ServerMessage.loadGame(game);
+                    }
+                    yield (gameID == 0)
+                            ? ServerMessage.loadGame(game, sequence)
+                            : ServerMessage.loadGame(gameID, game, sequence);
+                }
+                case MOVE_APPLIED -> {
+                    int sequence = frame.getInt();
+                    var move = unpackMove(frame.getShort());
+                    yield ServerMessage.moveApplied(gameID, move, sequence, STATUSES[frame.get()]);
+                }
+                case ERROR -> (gameID == 0) ? ServerMessage.error(string(frame)) : ServerMessage.error(gameID, string(frame));
+                default -> (gameID == 0)
+                        ? ServerMessage.notification(string(frame))
+                        : ServerMessage.notification(gameID, string(frame));
+            };
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("malformed message");
+        }
+    }
+
+    //helpers
+
+    //from and to squares in 6 bits each, promotion piece (ordinal + 1, 0 for none) in 3
+    static short packMove(ChessMove move) {
+        int promo = (move.getPromotionPiece() == null) ? 0 : move.getPromotionPiece().ordinal() + 1;
+        return (short) (square(move.getStartPosition()) << 9 | square(move.getEndPosition()) << 3 | promo);
+    }
+
+    static ChessMove unpackMove(short packed) {
+        int bits = packed & 0xFFFF;
+        int promo = bits & 0x7;
+        if (promo > PIECES.length) {
+            throw new IllegalArgumentException("bad promotion piece " + promo);
+        }
+        return new ChessMove(position(bits >>> 9 & 0x3F), position(bits >>> 3 & 0x3F),
+                promo == 0 ? null : PIECES[promo - 1]);
+    }
+
+    //two squares per byte, a1 first; a nibble is 0 for empty, else type ordinal + 1, plus 8 for black
+    private static void packBoard(ChessBoard board, ByteBuffer out) {
+        for (int sq = 0; sq < 64; sq += 2) {
+            out.put((byte) (nibble(board.getPiece(position(sq))) << 4 | nibble(board.getPiece(position(sq + 1)))));
+        }
+    }
+
+    private static ChessBoard unpackBoard(ByteBuffer in) {
+        var board = new ChessBoard();
+        for (int sq = 0; sq < 64; sq += 2) {
+            int b = in.get() & 0xFF;
+            board.addPiece(position(sq), piece(b >>> 4));
+            board.addPiece(position(sq + 1), piece(b & 0xF));
+        }
+        return board;
+    }
+
+    private static int nibble(ChessPiece piece) {
+        if (piece == null) {
+            return 0;
+        }
+        int n = piece.getPieceType().ordinal() + 1;
+        return piece.getTeamColor() == ChessGame.TeamColor.BLACK ? n | BLACK : n;
+    }
+
+    private static ChessPiece piece(int nibble) {
+        if (nibble == 0) {
+            return null;
+        }
+        var color = (nibble & BLACK) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        return new ChessPiece(color, PIECES[(nibble & 0x7) - 1]);
+    }
+
+    private static int square(ChessPosition pos) {
+        return (pos.getRow() - 1) * 8 + (pos.getColumn() - 1);
+    }
+
+    private static ChessPosition position(int square) {
+        return new ChessPosition(square / 8 + 1, square % 8 + 1);
+    }
+
+    private static byte[] utf8(String s) {
+        return (s == null) ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] trim(ByteBuffer buf) {
+        byte[] out = new byte[buf.position()];
+        buf.flip().get(out);
+        return out;
+    }
+
+    private static <T> int code(T[] table, T value) {
+        for (int i = 1; i < table.length; i++) {
+            if (table[i] == value) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static <T> T lookup(T[] table, byte code) {
+        if (code <= 0 || code >= table.length) {
+            throw new IllegalArgumentException("unknown type " + code);
+        }
+        return table[code];
+    }
+}
@@ -19,6 +19,9 @@ public class UserGameCommand {
 
     private ChessMove move;
 
+    //on CONNECT: send MOVE_APPLIED deltas instead of a full LOAD_GAME after each move
+    private boolean moveDeltas;
+
     public UserGameCommand(CommandType commandType, String authToken, Integer gameID) {
         this.commandType = commandType;
         this.authToken = authToken;
@@ -36,7 +39,14 @@ public class UserGameCommand {
         CONNECT,
         MAKE_MOVE,
         LEAVE,
-        RESIGN
+        RESIGN,
+        WATCH_EVAL,
+        UNWATCH_EVAL,
+        RESYNC,
+        //follow another game on the same connection, keeping the ones already followed
+        SUBSCRIBE,
+        //stop following one game without giving up a seat in it
+        UNSUBSCRIBE
     }
 
     public CommandType getCommandType() {
@@ -59,6 +69,14 @@ public class UserGameCommand {
         this.move = move;
     }
 
+    public boolean wantsMoveDeltas() {
+        return moveDeltas;
+    }
+
+    public void setMoveDeltas(boolean moveDeltas) {
+        this.moveDeltas = moveDeltas;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
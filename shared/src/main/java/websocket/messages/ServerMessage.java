@@ -1,6 +1,8 @@
 package websocket.messages;
 
 import chess.ChessGame;
+import chess.ChessMove;
+import model.Evaluation;
 import model.UserData;
 
 import java.util.Objects;
@@ -17,11 +19,28 @@ public class ServerMessage {
     private ChessGame game;
     private String message;
     private String errorMessage;
+    private Integer gameID;
+    private Evaluation evaluation;
+    private Integer sequence;
+    private ChessMove move;
+    private GameStatus status;
 
     public enum ServerMessageType {
         LOAD_GAME,
         ERROR,
-        NOTIFICATION
+        NOTIFICATION,
+        EVALUATION,
+        MOVE_APPLIED
+    }
+
+    /**
+     * Where the game stands for the side to move, after a move.
+     */
+    public enum GameStatus {
+        IN_PROGRESS,
+        CHECK,
+        CHECKMATE,
+        STALEMATE
     }
 
     public ServerMessage(ServerMessageType type) {
@@ -44,6 +63,31 @@ public class ServerMessage {
         return errorMessage;
     }
 
+    public Integer getGameID() {
+        return gameID;
+    }
+
+    public Evaluation getEvaluation() {
+        return evaluation;
+    }
+
+    /**
+     * Moves applied to the game so far, counted from when the server loaded it.
+     * A snapshot carries the count it reflects; each delta carries the one it
+     * produces, so a client that sees a number skipped knows it missed a move.
+     */
+    public Integer getSequence() {
+        return sequence;
+    }
+
+    public ChessMove getMove() {
+        return move;
+    }
+
+    public GameStatus getStatus() {
+        return status;
+    }
+
     //helpers
 
     public static ServerMessage loadGame(ChessGame game) {
@@ -54,6 +98,27 @@ public class ServerMessage {
         return msg;
     }
 
+    public static ServerMessage loadGame(ChessGame game, int sequence) {
+        ServerMessage msg = loadGame(game);
+        msg.sequence = sequence;
+        return msg;
+    }
+
+    public static ServerMessage loadGame(int gameID, ChessGame game, int sequence) {
+        ServerMessage msg = loadGame(game, sequence);
+        msg.gameID = gameID;
+        return msg;
+    }
+
+    public static ServerMessage moveApplied(int gameID, ChessMove move, int sequence, GameStatus status) {
+        ServerMessage msg = new ServerMessage(ServerMessageType.MOVE_APPLIED);
+        msg.gameID = gameID;
+        msg.move = move;
+        msg.sequence = sequence;
+        msg.status = status;
+        return msg;
+    }
+
     public static ServerMessage notification(String message) {
         ServerMessage msg = new ServerMessage(ServerMessageType.NOTIFICATION);
         msg.game = null;
@@ -62,6 +127,21 @@ public class ServerMessage {
         return msg;
     }
 
+    /**
+     * A notification about one game, for connections following several.
+     */
+    public static ServerMessage notification(int gameID, String message) {
+        ServerMessage msg = notification(message);
+        msg.gameID = gameID;
+        return msg;
+    }
+
+    public static ServerMessage error(int gameID, String errorMessage) {
+        ServerMessage msg = error(errorMessage);
+        msg.gameID = gameID;
+        return msg;
+    }
+
     public static ServerMessage error(String errorMessage) {
         ServerMessage msg = new ServerMessage(ServerMessageType.ERROR);
         msg.game = null;
@@ -70,6 +150,12 @@ public class ServerMessage {
         return msg;
     }
 
+    public static ServerMessage evaluation(int gameID, Evaluation evaluation) {
+        ServerMessage msg = new ServerMessage(ServerMessageType.EVALUATION);
+        msg.gameID = gameID;
+        msg.evaluation = evaluation;
+        return msg;
+    }
 
     @Override
     public boolean equals(Object o) {
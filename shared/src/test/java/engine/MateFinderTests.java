@@ -0,0 +1,58 @@
+package engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MateFinderTests {
+
+    @Test
+    public void findsRookLadderMateInTwo() throws Exception {
+        var game = ladder();
+        var result = new MateFinder(200_000).find(game, 2);
+        assertEquals(MateFinder.Status.MATE, result.status());
+        assertEquals(2, result.movesToMate());
+
+        for (ChessMove move : result.line()) {
+            game.makeMove(move);
+        }
+        assertTrue(game.isInCheckmate(ChessGame.TeamColor.BLACK));
+    }
+
+    @Test
+    public void noMateInOne() {
+        var result = new MateFinder(200_000).find(ladder(), 1);
+        assertEquals(MateFinder.Status.NO_MATE, result.status());
+        assertTrue(result.line().isEmpty());
+    }
+
+    @Test
+    public void givesUpWhenTableIsFull() {
+        var result = new MateFinder(10).find(ladder(), 3);
+        assertEquals(MateFinder.Status.GAVE_UP, result.status());
+    }
+
+    @Test
+    public void startingPositionHasNoQuickMate() {
+        var result = MateFinder.withMemoryLimit(64L << 20).find(new ChessGame(), 1);
+        assertEquals(MateFinder.Status.NO_MATE, result.status());
+    }
+
+    // white: king a1, rooks a6 and b5; black: king h8 — 1. Ra7 Kg8 2. Rb8#
+    private static ChessGame ladder() {
+        var board = new ChessBoard();
+        board.addPiece(new ChessPosition(1, 1), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        board.addPiece(new ChessPosition(6, 1), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        board.addPiece(new ChessPosition(5, 2), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        board.addPiece(new ChessPosition(8, 8), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        var game = new ChessGame();
+        game.setBoard(board);
+        game.setTeamTurn(ChessGame.TeamColor.WHITE);
+        return game;
+    }
+}
@@ -0,0 +1,49 @@
+package engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class SelfPlayMatchTests {
+
+    @Test
+    public void clearScoresStopEarly() {
+        var sprt = new Sprt(0, 10, 0.05, 0.05);
+        Assertions.assertEquals(Sprt.Decision.ACCEPT_H1, sprt.decide(300, 200, 100));
+        Assertions.assertEquals(Sprt.Decision.ACCEPT_H0, sprt.decide(100, 200, 300));
+        Assertions.assertEquals(Sprt.Decision.CONTINUE, sprt.decide(3, 4, 3));
+    }
+
+    @Test
+    public void oneSidedScoresStillDecide() {
+        var sprt = new Sprt(0, 10, 0.05, 0.05);
+        Assertions.assertEquals(Sprt.Decision.ACCEPT_H1, sprt.decide(50, 0, 0));
+        Assertions.assertEquals(Sprt.Decision.ACCEPT_H0, sprt.decide(0, 0, 50));
+        Assertions.assertTrue(sprt.llr(0, 50, 0) < 0);
+        Assertions.assertEquals(Sprt.Decision.CONTINUE, sprt.decide(2, 0, 0));
+    }
+
+    @Test
+    public void eloMatchesScore() {
+        Assertions.assertEquals(0, Sprt.elo(10, 0, 10), 1e-9);
+        Assertions.assertEquals(191, Sprt.elo(75, 0, 25), 1);
+        Assertions.assertTrue(Sprt.eloError(50, 0, 50) > 0);
+    }
+
+    @Test
+    public void matchPlaysBothColorsOfEachOpening() throws InterruptedException {
+        var player = new SelfPlayMatch.Player("d3", Engine::new, Engine.Limits.depth(3));
+        var match = new SelfPlayMatch(player, player,
+                List.of("7k/8/R7/1R6/8/8/8/K7 w - - 0 1"),
+                new SelfPlayMatch.Settings(2, 2, 40, new Sprt(0, 10, 0.05, 0.05)));
+
+        var report = match.run();
+
+        // the side with the rooks mates either way, so the colors cancel out
+        Assertions.assertEquals(2, report.games());
+        Assertions.assertEquals(1, report.wins());
+        Assertions.assertEquals(1, report.losses());
+        Assertions.assertTrue(report.candidateStats().moves() > 0);
+    }
+}
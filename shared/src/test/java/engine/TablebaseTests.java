@@ -0,0 +1,92 @@
+package engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import org.junit.jupiter.api.*;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TablebaseTests {
+    private static Path dir;
+    private static ByteBuffer table;
+
+    @BeforeAll
+    static void generate() throws Exception {
+        dir = Files.createTempDirectory("tablebase");
+        table = new TablebaseGenerator(Tablebase.open(dir)).generateAndWrite("KQK");
+    }
+
+    @Test
+    public void longestQueenMateIsTenMoves() {
+        int longestWin = 0;
+        for (int i = 0; i < table.capacity(); i++) {
+            int code = Byte.toUnsignedInt(table.get(i));
+            if (code != Tablebase.ILLEGAL && code < Tablebase.LOSS) {
+                longestWin = Math.max(longestWin, code);
+            }
+        }
+        assertEquals(19, longestWin);
+    }
+
+    @Test
+    public void mateInOneFromDisk() {
+        var tb = Tablebase.open(dir);
+        var game = game(ChessGame.TeamColor.WHITE, ChessGame.TeamColor.WHITE);
+        var result = tb.probe(game);
+        assertEquals(Tablebase.Outcome.WIN, result.outcome());
+        assertEquals(1, result.movesToMate());
+    }
+
+    @Test
+    public void stalemateIsDraw() {
+        var tb = Tablebase.open(dir);
+        var game = game(ChessGame.TeamColor.WHITE, ChessGame.TeamColor.BLACK);
+        assertEquals(Tablebase.Outcome.DRAW, tb.probe(game).outcome());
+    }
+
+    @Test
+    public void mirroredColorsUseSameTable() {
+        var tb = Tablebase.open(dir);
+        var game = game(ChessGame.TeamColor.BLACK, ChessGame.TeamColor.BLACK);
+        assertEquals(new Tablebase.Result(Tablebase.Outcome.WIN, 1), tb.probe(game));
+    }
+
+    @Test
+    public void bestMoveMates() throws Exception {
+        var tb = Tablebase.open(dir);
+        var game = game(ChessGame.TeamColor.WHITE, ChessGame.TeamColor.WHITE);
+        game.makeMove(tb.bestMove(game));
+        assertTrue(game.isInCheckmate(ChessGame.TeamColor.BLACK));
+    }
+
+    @Test
+    public void uncoveredMaterialReturnsNull() {
+        var tb = Tablebase.open(dir);
+        assertNull(tb.probe(new ChessGame()));
+        assertFalse(tb.covers("KRK"));
+    }
+
+    // strong king b6, queen c7, lone king a8 (mirrored when black is strong)
+    private static ChessGame game(ChessGame.TeamColor strong, ChessGame.TeamColor toMove) {
+        var weak = (strong == ChessGame.TeamColor.WHITE) ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        boolean flip = strong == ChessGame.TeamColor.BLACK;
+        var board = new ChessBoard();
+        board.addPiece(at(6, 2, flip), new ChessPiece(strong, ChessPiece.PieceType.KING));
+        board.addPiece(at(7, 3, flip), new ChessPiece(strong, ChessPiece.PieceType.QUEEN));
+        board.addPiece(at(8, 1, flip), new ChessPiece(weak, ChessPiece.PieceType.KING));
+        var game = new ChessGame();
+        game.setBoard(board);
+        game.setTeamTurn(toMove);
+        return game;
+    }
+
+    private static ChessPosition at(int row, int col, boolean flip) {
+        return new ChessPosition(flip ? 9 - row : row, col);
+    }
+}
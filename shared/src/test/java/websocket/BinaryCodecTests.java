@@ -0,0 +1,74 @@
+package websocket;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import org.junit.jupiter.api.*;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ServerMessage;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryCodecTests {
+
+    @Test
+    public void commandsRoundTrip() {
+        var promote = new ChessMove(new ChessPosition(7, 8), new ChessPosition(8, 8), ChessPiece.PieceType.KNIGHT);
+        var move = new UserGameCommand(UserGameCommand.CommandType.MAKE_MOVE, "token-123", 42, promote);
+        var decoded = BinaryCodec.decodeCommand(ByteBuffer.wrap(BinaryCodec.encode(move)));
+        assertEquals(move, decoded);
+        assertEquals(promote, decoded.getMove());
+
+        var connect = new UserGameCommand(UserGameCommand.CommandType.CONNECT, "token-123", 7);
+        connect.setMoveDeltas(true);
+        decoded = BinaryCodec.decodeCommand(ByteBuffer.wrap(BinaryCodec.encode(connect)));
+        assertEquals(connect, decoded);
+        assertTrue(decoded.wantsMoveDeltas());
+        assertNull(decoded.getMove());
+    }
+
+    @Test
+    public void boardFitsIn32BytesAndRoundTrips() throws Exception {
+        var game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+
+        byte[] frame = BinaryCodec.encode(ServerMessage.loadGame(12, game, 3));
+        assertEquals(1 + 4 + 4 + 1 + 32, frame.length);
+        var decoded = BinaryCodec.decodeMessage(ByteBuffer.wrap(frame));
+        assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, decoded.getServerMessageType());
+        assertEquals(12, (int) decoded.getGameID());
+        assertEquals(3, (int) decoded.getSequence());
+        assertEquals(game.getBoard(), decoded.getGame().getBoard());
+        assertEquals(ChessGame.TeamColor.BLACK, decoded.getGame().getTeamTurn());
+
+        var move = new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null);
+        decoded = BinaryCodec.decodeMessage(ByteBuffer.wrap(BinaryCodec.encode(
+                ServerMessage.moveApplied(9, move, 4, ServerMessage.GameStatus.IN_PROGRESS))));
+        assertEquals(move, decoded.getMove());
+        assertEquals(9, (int) decoded.getGameID());
+        assertEquals(ServerMessage.GameStatus.IN_PROGRESS, decoded.getStatus());
+
+        decoded = BinaryCodec.decodeMessage(ByteBuffer.wrap(BinaryCodec.encode(ServerMessage.error("Error: nope"))));
+        assertEquals("Error: nope", decoded.getErrorMessage());
+        assertNull(decoded.getGameID());
+        decoded = BinaryCodec.decodeMessage(ByteBuffer.wrap(BinaryCodec.encode(ServerMessage.notification(5, "hi"))));
+        assertEquals(5, (int) decoded.getGameID());
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decodeMessage(ByteBuffer.wrap(new byte[]{99})));
+    }
+
+    @Test
+    public void malformedCommandsAreRejected() {
+        var move = new ChessMove(new ChessPosition(7, 8), new ChessPosition(8, 8), null);
+        var frame = BinaryCodec.encode(new UserGameCommand(UserGameCommand.CommandType.MAKE_MOVE, "t", 1, move));
+        //promotion bits 7 name no piece
+        frame[frame.length - 1] |= 0x7;
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decodeCommand(ByteBuffer.wrap(frame)));
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.unpackMove((short) 0x7));
+
+        var truncated = new byte[]{frame[0], 0, 0};
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decodeCommand(ByteBuffer.wrap(truncated)));
+    }
+}